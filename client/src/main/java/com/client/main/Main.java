@@ -6,15 +6,19 @@ import com.client.runtime.Runner;
 import com.general.io.Interrogator;
 import com.general.network.Request;
 
+import java.nio.file.Path;
 import java.util.Scanner;
 import java.util.concurrent.TimeoutException;
 
 public class Main {
     public static final int PORT = 28374;
+    private static final String UNIX_SOCKET = System.getProperty("client.unixSocket");
     public static void main(String[] args) {
         var console = new StandardConsole();
         Interrogator.setUserScanner(new Scanner(System.in));
-        TCPClient client = new TCPClient("localhost", PORT, console);
+        TCPClient client = UNIX_SOCKET != null
+                ? new TCPClient(Path.of(UNIX_SOCKET), console)
+                : new TCPClient("localhost", PORT, console);
         try {
             console.println("Попытка подключения к северу");
             client.connect();
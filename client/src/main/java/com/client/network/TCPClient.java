@@ -1,29 +1,79 @@
 package com.client.network;
 
 import com.general.io.Console;
+import com.general.network.ChangeEvent;
+import com.general.network.Codec;
+import com.general.network.Codecs;
+import com.general.network.Compression;
+import com.general.network.Frame;
+import com.general.network.FrameDecoder;
+import com.general.network.Handshake;
 import com.general.network.Request;
 import com.general.network.Response;
+import com.general.network.SessionToken;
+import com.general.network.StreamChunk;
+import com.general.network.StreamedResponse;
 
 import java.io.*;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.UnresolvedAddressException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 public class TCPClient {
+    private static final boolean COMPRESSION = Boolean.parseBoolean(System.getProperty("client.compression", "true"));
+    private static final int[] CODECS = Codecs.parse(System.getProperty("client.codecs", "binary,json,java"));
+    private static final long WRITE_TIMEOUT_MILLIS = Long.getLong("client.writeTimeoutMillis", 10000L);
     private final Console output;
     private final String serverAddress;
     private final int serverPort;
+    private final Path unixSocket;
     private SocketChannel socketChannel;
+    private FrameDecoder frameDecoder;
+    /**
+     * Кадры, полученные, пока отправка запроса ждала готовности канала, и еще не выданные как ответы.
+     */
+    private final Deque<Frame> receivedFrames = new ArrayDeque<>();
+    private Codec codec = Codecs.JAVA;
+    private int lastRequestId = 0;
+    private SessionToken sessionToken;
+    private boolean subscribed = false;
+    private Consumer<ChangeEvent> eventListener;
 
     public TCPClient(String serverAddress, int serverPort, Console output) {
         this.serverAddress = serverAddress;
         this.serverPort = serverPort;
+        this.unixSocket = null;
+        this.output = output;
+    }
+
+    /**
+     * Создает клиент, подключающийся к серверу на этом же хосте через сокет домена Unix.
+     *
+     * @param unixSocket путь к файлу сокета сервера
+     * @param output     консоль для вывода сообщений
+     */
+    public TCPClient(Path unixSocket, Console output) {
+        this.serverAddress = null;
+        this.serverPort = 0;
+        this.unixSocket = unixSocket;
         this.output = output;
     }
 
@@ -37,10 +87,23 @@ public class TCPClient {
         Selector selector = null;
         boolean connectFlag = false;
         try {
-            socketChannel = SocketChannel.open();
+            SocketAddress address;
+            if (unixSocket != null) {
+                socketChannel = SocketChannel.open(StandardProtocolFamily.UNIX);
+                address = UnixDomainSocketAddress.of(unixSocket);
+            } else {
+                socketChannel = SocketChannel.open();
+                address = new InetSocketAddress(serverAddress, serverPort);
+            }
             socketChannel.configureBlocking(false);
-            InetSocketAddress address = new InetSocketAddress(serverAddress, serverPort);
-            socketChannel.connect(address);
+            frameDecoder = new FrameDecoder();
+            receivedFrames.clear();
+            codec = Codecs.JAVA;
+            // Локальное соединение через сокет домена Unix обычно устанавливается сразу
+            if (socketChannel.connect(address)) {
+                connectFlag = true;
+                return connected();
+            }
 
             selector = Selector.open();
             socketChannel.register(selector, SelectionKey.OP_CONNECT);
@@ -61,8 +124,7 @@ public class TCPClient {
                         } catch (IOException ignored) {
                         }
                         if (connectFlag) {
-                            output.println("Подключено к серверу: " + serverAddress + ":" + serverPort);
-                            return true;
+                            return connected();
                         }
                     }
                 }
@@ -81,6 +143,142 @@ public class TCPClient {
         }
     }
 
+    /**
+     * Завершает подключение: сообщает о нем, согласует с сервером возможности протокола и, если вход
+     * уже выполнялся, восстанавливает сессию.
+     *
+     * @return true
+     */
+    private boolean connected() {
+        output.println("Подключено к серверу: " + (unixSocket != null ? unixSocket : serverAddress + ":" + serverPort));
+        handshake();
+        if (sessionToken != null) {
+            Response response = sendCommand(new Request(SessionToken.LOGIN_COMMAND, sessionToken));
+            if (!response.isSuccess()) {
+                sessionToken = null;
+                output.printError("Не удалось восстановить сессию: " + response + ". Выполните вход заново.");
+            }
+        }
+        if (subscribed) {
+            // Пока соединения не было, события могли быть пропущены
+            subscribed = sendCommand(new Request(ChangeEvent.SUBSCRIBE_COMMAND, null)).isSuccess();
+            if (subscribed) eventListener.accept(ChangeEvent.resync());
+        }
+        return true;
+    }
+
+    /**
+     * Подписывается на изменения коллекции. События, которые сервер присылает между ответами,
+     * передаются получателю в потоке, ожидающем ответ; дождаться событий без запроса можно методом
+     * {@link #awaitEvents(long)}. После переподключения подписка оформляется заново, и получатель
+     * получает {@link ChangeEvent#resync()}.
+     *
+     * @param listener получатель событий
+     * @return ответ сервера
+     */
+    public Response subscribe(Consumer<ChangeEvent> listener) {
+        eventListener = listener;
+        Response response = sendCommand(new Request(ChangeEvent.SUBSCRIBE_COMMAND, null));
+        subscribed = response.isSuccess();
+        return response;
+    }
+
+    /**
+     * Отменяет подписку на изменения коллекции.
+     *
+     * @return ответ сервера
+     */
+    public Response unsubscribe() {
+        subscribed = false;
+        return sendCommand(new Request(ChangeEvent.UNSUBSCRIBE_COMMAND, null));
+    }
+
+    /**
+     * Принимает события изменения коллекции в течение указанного времени и передает их получателю.
+     *
+     * @param millis время ожидания в миллисекундах
+     * @throws IOException если произошла ошибка ввода-вывода
+     * @throws ClassNotFoundException если класс события не найден
+     */
+    public void awaitEvents(long millis) throws IOException, ClassNotFoundException {
+        long deadline = System.currentTimeMillis() + millis;
+        long remaining;
+        while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+            Response response = pollResponse(remaining);
+            if (response instanceof ChangeEvent event) deliver(event);
+        }
+    }
+
+    /**
+     * Передает событие изменения получателю, а если подписки нет — выводит его.
+     *
+     * @param event событие изменения
+     */
+    private void deliver(ChangeEvent event) {
+        if (eventListener != null) eventListener.accept(event);
+        else output.println(event);
+    }
+
+    /**
+     * Выполняет вход на сервере. Учетные данные передаются только в этом запросе: сервер привязывает сессию
+     * к соединению, а полученный токен позволяет восстановить ее после переподключения.
+     *
+     * @param login    логин
+     * @param password пароль
+     * @return ответ сервера
+     */
+    public Response login(String login, String password) {
+        return authenticate(SessionToken.LOGIN_COMMAND, login, password);
+    }
+
+    /**
+     * Регистрирует нового пользователя на сервере и сразу выполняет вход.
+     *
+     * @param login    логин
+     * @param password пароль
+     * @return ответ сервера
+     */
+    public Response register(String login, String password) {
+        return authenticate(SessionToken.REGISTER_COMMAND, login, password);
+    }
+
+    /**
+     * Отправляет учетные данные служебной командой входа или регистрации и запоминает полученный токен сессии.
+     *
+     * @param command  служебная команда
+     * @param login    логин
+     * @param password пароль
+     * @return ответ сервера
+     */
+    private Response authenticate(String command, String login, String password) {
+        Request request = new Request(command, null);
+        request.setLogin(login);
+        request.setPassword(password);
+        Response response = sendCommand(request);
+        if (response.isSuccess() && response.getData() instanceof SessionToken token) {
+            sessionToken = token;
+        }
+        return response;
+    }
+
+    /**
+     * Согласует с сервером возможности протокола и формат сообщений из свойства {@code client.codecs}.
+     * Сжатые и потоковые ответы обрабатываются прозрачно, поэтому из результата рукопожатия клиенту
+     * нужен только выбранный формат; если сервер не поддерживает рукопожатие или выбор формата,
+     * он продолжает отвечать в базовом формате.
+     */
+    private void handshake() {
+        int features = Handshake.STREAMING | (COMPRESSION ? Handshake.COMPRESSION : 0);
+        Response response = sendCommand(new Request(Handshake.COMMAND, new Handshake(features, CODECS)));
+        if (!response.isSuccess()) {
+            output.printError("Не удалось согласовать возможности протокола: " + response);
+            return;
+        }
+        if (response.getData() instanceof Handshake agreed && Codecs.byId(agreed.getCodec()) != null) {
+            codec = Codecs.byId(agreed.getCodec());
+        }
+    }
+
     /**
      * Проверяет, есть ли подключение к серверу, и при необходимости пытается переподключиться.
      *
@@ -112,75 +310,166 @@ public class TCPClient {
     }
 
     /**
-     * Отправляет запрос на сервер.
+     * Отправляет запрос на сервер. Если у запроса нет идентификатора, ему назначается новый.
      *
      * @param request запрос для отправки
      * @throws IOException если произошла ошибка ввода-вывода
      */
     public void sendRequest(Request request) throws IOException {
         if (!ensureConnection()) throw new IOException("Не удалось обеспечить подключение");
+        if (request.getRequestId() == 0) request.setRequestId(nextRequestId());
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-        objectOutputStream.writeObject(request);
-        objectOutputStream.flush();
-        byte[] requestBytes = byteArrayOutputStream.toByteArray();
-        ByteBuffer buffer = ByteBuffer.wrap(requestBytes);
+        codec.encode(request, byteArrayOutputStream);
+        ByteBuffer buffer = Frame.wrap(request.getRequestId(), byteArrayOutputStream.toByteArray());
         socketChannel.write(buffer);
+        if (buffer.hasRemaining()) awaitWrite(buffer);
+    }
+
+    /**
+     * Дописывает кадр, который канал не принял сразу, дожидаясь готовности канала к записи. Пока запись стоит,
+     * пришедшие ответы читаются и откладываются до {@link #receiveResponse()}: сервер, которому некуда отправлять
+     * ответы, перестает читать запросы, и без этого клиент и сервер ждали бы друг друга. Если сервер не принимает данные дольше
+     * {@code client.writeTimeoutMillis}, запрос считается неотправленным.
+     *
+     * @param buffer недописанный кадр
+     * @throws IOException если произошла ошибка ввода-вывода, сервер закрыл соединение или время ожидания истекло
+     */
+    private void awaitWrite(ByteBuffer buffer) throws IOException {
+        try (Selector selector = Selector.open()) {
+            SelectionKey key = socketChannel.register(selector, SelectionKey.OP_WRITE | SelectionKey.OP_READ);
+            long deadline = System.currentTimeMillis() + WRITE_TIMEOUT_MILLIS;
+            while (buffer.hasRemaining()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException("Сервер не принимает данные в течение " + WRITE_TIMEOUT_MILLIS + " мс");
+                }
+                if (selector.select(remaining) == 0) continue;
+                selector.selectedKeys().clear();
+
+                if (key.isReadable()) {
+                    if (frameDecoder.readFrom(socketChannel) == -1) {
+                        socketChannel.close();
+                        throw new IOException("Соединение закрыто сервером");
+                    }
+                    Frame frame;
+                    while ((frame = frameDecoder.nextFrame()) != null) receivedFrames.add(frame);
+                }
+                if (key.isWritable() && socketChannel.write(buffer) > 0) {
+                    deadline = System.currentTimeMillis() + WRITE_TIMEOUT_MILLIS;
+                }
+            }
+        }
     }
 
     /**
-     * Получает ответ от сервера.
+     * Получает ответ на запрос с указанным идентификатором. Ответы на другие запросы, например на запросы,
+     * время ожидания которых уже истекло, пропускаются. Части потокового ответа выводятся сразу по мере получения,
+     * события изменения коллекции передаются получателю подписки, а возвращается завершающий ответ.
+     *
+     * @param requestId идентификатор запроса
+     * @return ответ от сервера
+     * @throws IOException если произошла ошибка ввода-вывода
+     * @throws ClassNotFoundException если класс ответа не найден
+     */
+    public Response receiveResponse(int requestId) throws IOException, ClassNotFoundException {
+        while (true) {
+            Response response = receiveResponse();
+            if (response instanceof ChangeEvent event) {
+                deliver(event);
+                continue;
+            }
+            if (response.getRequestId() != requestId) continue;
+            if (!(response instanceof StreamChunk)) return response;
+            output.println(response.getMessage());
+        }
+    }
+
+    /**
+     * Получает очередной ответ от сервера.
      *
      * @return ответ от сервера
      * @throws IOException если произошла ошибка ввода-вывода
      * @throws ClassNotFoundException если класс ответа не найден
      */
     public Response receiveResponse() throws IOException, ClassNotFoundException {
+        Response response = pollResponse(10000); // Ожидание ответа до 10 секунд
+        if (response != null) {
+            return response;
+        }
+
+        // Если за 10 секунд не получили ответ, генерируем исключение
+        throw new IOException("Нет ответа от сервера в течение указанного времени ожидания");
+    }
+
+    /**
+     * Получает очередной ответ от сервера, ожидая его не дольше указанного времени.
+     *
+     * @param timeoutMillis время ожидания в миллисекундах
+     * @return ответ от сервера или null, если за это время ответ не получен
+     * @throws IOException если произошла ошибка ввода-вывода
+     * @throws ClassNotFoundException если класс ответа не найден
+     */
+    private Response pollResponse(long timeoutMillis) throws IOException, ClassNotFoundException {
         ensureConnection();
-        Selector selector = Selector.open();
-        socketChannel.configureBlocking(false);
-        socketChannel.register(selector, SelectionKey.OP_READ);
-        ByteBuffer buffer = ByteBuffer.allocate(16384);
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        long startTime = System.currentTimeMillis();
+        Frame frame = receivedFrames.poll();
+        if (frame == null) frame = frameDecoder.nextFrame();
+        if (frame != null) {
+            return deserializeResponse(frame);
+        }
 
-        while (System.currentTimeMillis() - startTime < 10000) { // Ожидание ответа до 10 секунд
-            int readyChannels = selector.select(10000); // Ожидание событий до 10 секунд
-            if (readyChannels == 0) {
-                continue;
-            }
+        try (Selector selector = Selector.open()) {
+            socketChannel.configureBlocking(false);
+            socketChannel.register(selector, SelectionKey.OP_READ);
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long remaining;
 
-            Set<SelectionKey> selectedKeys = selector.selectedKeys();
-            Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
+            while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+                int readyChannels = selector.select(remaining);
+                if (readyChannels == 0) {
+                    continue;
+                }
+                selector.selectedKeys().clear();
 
-            while (keyIterator.hasNext()) {
-                SelectionKey key = keyIterator.next();
-                if (key.isReadable()) {
-                    int bytesRead;
-                    while ((bytesRead = socketChannel.read(buffer)) > 0) {
-                        buffer.flip();
-                        byteArrayOutputStream.write(buffer.array(), 0, bytesRead);
-                        buffer.clear();
-                    }
-                    if (bytesRead == -1) {
-                        // Закрытие канала
-                        socketChannel.close();
-                    }
+                if (frameDecoder.readFrom(socketChannel) == -1) {
+                    // Закрытие канала
+                    socketChannel.close();
+                    throw new IOException("Соединение закрыто сервером");
                 }
-                keyIterator.remove();
-            }
 
-            byte[] responseBytes = byteArrayOutputStream.toByteArray();
-            if (responseBytes.length > 0) {
-                try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(responseBytes))) {
-                    return (Response) objectInputStream.readObject();
-                } catch (Exception ignore) {
+                // Ответ может прийти несколькими частями: ждем, пока кадр не будет получен полностью
+                frame = frameDecoder.nextFrame();
+                if (frame != null) {
+                    return deserializeResponse(frame);
                 }
             }
         }
+        return null;
+    }
 
-        // Если за 10 секунд не получили ответ, генерируем исключение
-        throw new IOException("Нет ответа от сервера в течение указанного времени ожидания");
+    /**
+     * Десериализует ответ из полученного кадра в согласованном формате, распаковывая сжатое тело.
+     *
+     * @param frame кадр с ответом
+     * @return ответ от сервера с идентификатором запроса из заголовка кадра
+     * @throws IOException если произошла ошибка ввода-вывода
+     * @throws ClassNotFoundException если класс ответа не найден
+     */
+    private Response deserializeResponse(Frame frame) throws IOException, ClassNotFoundException {
+        if (!(codec.decode(Compression.body(frame)) instanceof Response response)) {
+            throw new StreamCorruptedException("Получен запрос вместо ответа");
+        }
+        response.setRequestId(frame.getRequestId());
+        return response;
+    }
+
+    /**
+     * Выдает идентификатор для очередного запроса; 0 пропускается, так как означает отсутствие идентификатора.
+     *
+     * @return новый идентификатор запроса
+     */
+    private int nextRequestId() {
+        if (++lastRequestId == 0) lastRequestId = 1;
+        return lastRequestId;
     }
 
     /**
@@ -192,7 +481,7 @@ public class TCPClient {
     public Response sendCommand(Request request) {
         try {
             sendRequest(request);
-            return receiveResponse();
+            return receiveResponse(request.getRequestId());
         } catch (IOException | ClassNotFoundException e) {
             output.printError(e.getMessage());
         }
@@ -205,6 +494,61 @@ public class TCPClient {
         return new Response(false, "Команда не выполнена!", null);
     }
 
+    /**
+     * Отправляет на сервер несколько команд подряд, не дожидаясь ответа на каждую, и затем принимает ответы.
+     * Все запросы одновременно находятся в обработке: сервер может выполнять их параллельно и отвечать
+     * в любом порядке, а ответы сопоставляются с запросами по идентификатору. Части потоковых ответов
+     * накапливаются и объединяются с завершающим ответом.
+     *
+     * @param requests запросы для отправки
+     * @return ответы от сервера в порядке отправки запросов
+     */
+    public List<Response> sendCommands(List<Request> requests) {
+        List<Response> responses = new ArrayList<>(requests.size());
+        try {
+            Map<Integer, Response> received = new HashMap<>();
+            Map<Integer, StringBuilder> streams = new HashMap<>();
+            Set<Integer> awaited = new HashSet<>();
+            for (Request request : requests) {
+                sendRequest(request);
+                awaited.add(request.getRequestId());
+            }
+            while (!awaited.isEmpty()) {
+                Response response = receiveResponse();
+                if (response instanceof ChangeEvent event) {
+                    deliver(event);
+                    continue;
+                }
+                int requestId = response.getRequestId();
+                if (!awaited.contains(requestId)) continue;
+                StringBuilder rows = streams.computeIfAbsent(requestId, id -> new StringBuilder());
+                if (response instanceof StreamChunk) {
+                    if (!rows.isEmpty()) rows.append('\n');
+                    rows.append(response.getMessage());
+                } else {
+                    awaited.remove(requestId);
+                    received.put(requestId, StreamedResponse.join(rows.toString(), response));
+                }
+            }
+            for (Request request : requests) {
+                responses.add(received.get(request.getRequestId()));
+            }
+            return responses;
+        } catch (IOException | ClassNotFoundException e) {
+            output.printError(e.getMessage());
+        }
+        output.printError("Запросы не отправлены. Повторите попытку позже.");
+        try {
+            disconnect();
+        } catch (IOException e) {
+            output.printError("Не удалось закрыть соединение");
+        }
+        while (responses.size() < requests.size()) {
+            responses.add(new Response(false, "Команда не выполнена!", null));
+        }
+        return responses;
+    }
+
     /**
      * Проверяет, подключен ли клиент к серверу.
      *
@@ -10,6 +10,7 @@ import com.general.network.Response;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -199,6 +200,51 @@ public class Runner {
                         console.println("Правильное использование, используйте help для получения списка команд и их аргументов");
                     }
                 }
+                case "login", "register" -> {
+                    if (userCommand[1].isEmpty()) {
+                        console.printError("Неправильное количество аргументов!");
+                        console.println("Правильное использование: '" + userCommand[0] + " <логин>'");
+                    } else {
+                        console.println("Введите пароль:");
+                        String password = Interrogator.getUserScanner().nextLine();
+                        response = "login".equals(userCommand[0])
+                                ? tcpClient.login(userCommand[1], password)
+                                : tcpClient.register(userCommand[1], password);
+                        if (response.getData() != null) response = new Response(response.isSuccess(), response.getMessage());
+                    }
+                }
+                case "filter_starts_with_name" -> {
+                    // Ограничение передается отдельным аргументом, чтобы не менять искомую подстроку
+                    String[] arguments = userCommand;
+                    if (userCommand[1].equals("--limit") || userCommand[1].startsWith("--limit ")) {
+                        String[] option = userCommand[1].split(" ", 3);
+                        arguments = option.length == 3 ? new String[]{userCommand[0], option[2], option[1]} : null;
+                    }
+                    if (userCommand[1].isEmpty() || arguments == null) {
+                        console.printError("Неправильное количество аргументов!");
+                        console.println("Правильное использование: 'filter_starts_with_name [--limit N] name'");
+                    } else {
+                        response = tcpClient.sendCommand(new Request(userCommand[0], arguments));
+                        if (response == null || !response.isSuccess()) return ExitCode.ERROR;
+                    }
+                }
+                case "subscribe" -> {
+                    try {
+                        long seconds = userCommand[1].isEmpty() ? 60 : Long.parseLong(userCommand[1]);
+                        response = tcpClient.subscribe(console::println);
+                        if (response.isSuccess()) {
+                            console.println(response);
+                            console.println("Ожидание изменений " + seconds + " с...");
+                            tcpClient.awaitEvents(seconds * 1000);
+                            response = tcpClient.unsubscribe();
+                        }
+                    } catch (NumberFormatException exception) {
+                        console.printError("Неправильное количество аргументов!");
+                        console.println("Правильное использование: 'subscribe [секунд]'");
+                    } catch (IOException | ClassNotFoundException exception) {
+                        console.printError(exception.getMessage());
+                    }
+                }
                 case "history" -> {
                     console.println("История команд: ");
                     for (String com : commandHistory) {
@@ -220,4 +266,4 @@ public class Runner {
 
         return ExitCode.OK;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
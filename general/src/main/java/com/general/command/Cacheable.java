@@ -0,0 +1,15 @@
+package com.general.command;
+
+/**
+ * Команда только для чтения, результат которой зависит лишь от состояния данных, но не от аргументов
+ * и пользователя. Пока {@link #version()} не меняется, сервер может отправлять сохраненный сериализованный ответ,
+ * не выполняя команду заново.
+ */
+public interface Cacheable extends ReadOnly {
+    /**
+     * Возвращает версию данных, от которых зависит результат команды.
+     *
+     * @return версия; меняется при каждом изменении данных
+     */
+    long version();
+}
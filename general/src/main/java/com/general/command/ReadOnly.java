@@ -0,0 +1,29 @@
+package com.general.command;
+
+/**
+ * Команда, которая только читает коллекцию. Такие команды выполняются параллельно под общей блокировкой чтения
+ * {@link com.general.managers.CollectionManager}, а остальные команды — под исключительной блокировкой записи.
+ */
+public interface ReadOnly {
+    /**
+     * Можно ли выполнять команду оптимистично, вообще не захватывая блокировку. Подходит для команд, которые
+     * читают лишь несколько полей и не обходят структуры данных, поэтому не могут зациклиться или упасть, если данные
+     * меняются во время чтения. Если за время выполнения коллекция изменилась, команда выполняется повторно
+     * под блокировкой чтения.
+     *
+     * @return true, если команду можно выполнять оптимистично
+     */
+    default boolean optimistic() {
+        return false;
+    }
+
+    /**
+     * Читает ли команда только неизменяемый снимок {@link com.general.managers.CollectionManager#snapshot()}.
+     * Такие команды выполняются вовсе без блокировки: долгий обход снимка не задерживает изменения коллекции.
+     *
+     * @return true, если команде не нужна блокировка
+     */
+    default boolean lockFree() {
+        return false;
+    }
+}
@@ -0,0 +1,18 @@
+package com.general.command;
+
+import com.general.network.Request;
+import com.general.network.StreamedResponse;
+
+/**
+ * Интерфейс команд, результат которых может передаваться клиенту частями по мере формирования строк.
+ */
+public interface Streamable {
+    /**
+     * Подготавливает потоковый ответ: проверяет аргументы и фиксирует набор элементов.
+     * Строки результата формируются лениво, уже при отправке.
+     *
+     * @param request Запрос.
+     * @return Строки результата и завершающий ответ.
+     */
+    StreamedResponse stream(Request request);
+}
@@ -0,0 +1,17 @@
+package com.general.managers;
+
+import com.general.network.ChangeEvent;
+
+/**
+ * Получатель событий об изменениях коллекции {@link CollectionManager}.
+ * Вызывается в потоке, изменившем коллекцию, поэтому не должен выполнять долгих операций.
+ */
+@FunctionalInterface
+public interface CollectionListener {
+    /**
+     * Сообщает об изменении коллекции.
+     *
+     * @param event событие изменения
+     */
+    void collectionChanged(ChangeEvent event);
+}
@@ -1,41 +1,220 @@
 package com.general.managers;
 
 import com.general.models.base.Element;
+import com.general.network.ChangeEvent;
 import lombok.Getter;
 import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * Абстрактный класс для управления коллекцией обобщенного типа.
+ * О каждом добавлении, замене и удалении элемента и об очистке коллекции сообщается
+ * зарегистрированным {@link CollectionListener}.
+ * Каждое изменение коллекции и сведений о ней увеличивает версию {@link #getVersion()}, по которой
+ * можно повторно использовать результаты команд, вычисленные для прежнего состояния.
+ * <p>
+ * Порядок элементов задает коллекция, созданная в {@link #createCollection()}; упорядоченная коллекция
+ * (например, {@link java.util.TreeSet} с {@link #nameOrder()}) поддерживает порядок сама при каждом изменении,
+ * поэтому коллекцию не нужно пересортировывать.
+ * <p>
+ * Для поиска по ID все пути изменения коллекции поддерживают индекс {@link LongHashIndex}, поэтому
+ * {@link #getById(Long)} и {@link #checkExist(Long)} работают за O(1), и индекс в естественном порядке элементов
+ * ({@link Comparable}), по которому минимальный элемент и диапазоны меньших или больших элементов
+ * выбираются без обхода всей коллекции. Чтобы индекс не расходился с коллекцией,
+ * {@link #getCollection()} возвращает ее только для чтения, а целиком коллекция заменяется через
+ * {@link #setCollection(Collection)}. Наследники могут вести свои индексы, переопределив
+ * {@link #onAdded}, {@link #onRemoved} и {@link #onCleared}.
+ * <p>
+ * Сами методы менеджера не синхронизированы. Код, работающий с коллекцией из нескольких потоков, выполняет
+ * чтение через {@link #read} или {@link #readOptimistic}, а изменения — через {@link #write}: читатели работают
+ * параллельно, а изменения исключительны. Блокировка {@link StampedLock} нереентерабельна, поэтому внутри
+ * этих методов нельзя снова вызывать их же.
+ * <p>
+ * Кроме того, каждое изменение публикует неизменяемый снимок коллекции {@link #snapshot()} в порядке
+ * {@link #nameOrder()}. Снимок хранится в {@link PersistentTreeSet}: следующая версия строится под блокировкой
+ * записи за O(log n) на элемент и разделяет с прежней все незатронутые узлы, а читатели получают текущую версию
+ * одним чтением volatile-поля и обходят ее без блокировок, не задерживая изменения.
  */
 public abstract class CollectionManager<T extends Element & Comparable<T>> {
     private Collection<T> collection;
+    private final LongHashIndex<T> byId = new LongHashIndex<>();
+    private final NavigableSet<T> byOrder = new TreeSet<>(Comparator.<T>naturalOrder()
+            .thenComparing(this::getId, Comparator.nullsFirst(Comparator.naturalOrder())));
     @Getter
-    @Setter
-    private LocalDateTime lastInitTime;
+    private volatile LocalDateTime lastInitTime;
     @Getter
-    @Setter
-    private LocalDateTime lastSaveTime;
+    private volatile LocalDateTime lastSaveTime;
     @Setter
     @Getter
     private long nextId = 1; // Initial nextId
+    private final List<CollectionListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong version = new AtomicLong();
+    private final StampedLock lock = new StampedLock();
+    private volatile PersistentTreeSet<T> snapshot;
 
     private static final Logger logger = LoggerFactory.getLogger(CollectionManager.class);
 
     public CollectionManager() {
         this.collection = createCollection();
+        this.snapshot = PersistentTreeSet.empty(nameOrder());
         this.lastInitTime = null;
         this.lastSaveTime = null;
     }
 
+    /**
+     * Возвращает версию состояния коллекции.
+     *
+     * @return версия, которая увеличивается при каждом изменении коллекции, ее загрузке и сохранении
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Выполняет действие под общей блокировкой чтения: другие читатели работают параллельно, изменения ждут.
+     *
+     * @param action действие, которое только читает коллекцию
+     * @param <R>    тип результата
+     * @return результат действия
+     */
+    public <R> R read(Supplier<R> action) {
+        long stamp = lock.readLock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Выполняет действие оптимистично, не захватывая блокировку. Если за время выполнения коллекция изменилась
+     * или действие упало на несогласованных данных, оно выполняется повторно через {@link #read}.
+     * Подходит только для коротких действий, которые читают несколько полей и не обходят структуры данных.
+     *
+     * @param action действие, которое только читает коллекцию
+     * @param <R>    тип результата
+     * @return результат действия, вычисленный по согласованному состоянию
+     */
+    public <R> R readOptimistic(Supplier<R> action) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                R result = action.get();
+                if (lock.validate(stamp)) return result;
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) throw e;
+            }
+        }
+        return read(action);
+    }
+
+    /**
+     * Выполняет действие под исключительной блокировкой записи.
+     *
+     * @param action действие, изменяющее коллекцию
+     * @param <R>    тип результата
+     * @return результат действия
+     */
+    public <R> R write(Supplier<R> action) {
+        long stamp = lock.writeLock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Отмечает изменение состояния коллекции.
+     */
+    protected void changed() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Устанавливает время последней инициализации коллекции.
+     *
+     * @param lastInitTime время инициализации
+     */
+    public void setLastInitTime(LocalDateTime lastInitTime) {
+        this.lastInitTime = lastInitTime;
+        changed();
+    }
+
+    /**
+     * Устанавливает время последнего сохранения коллекции.
+     *
+     * @param lastSaveTime время сохранения
+     */
+    public void setLastSaveTime(LocalDateTime lastSaveTime) {
+        this.lastSaveTime = lastSaveTime;
+        changed();
+    }
+
+    /**
+     * Регистрирует получателя событий об изменениях коллекции.
+     *
+     * @param listener получатель событий
+     */
+    public void addListener(CollectionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Отменяет регистрацию получателя событий.
+     *
+     * @param listener получатель событий
+     */
+    public void removeListener(CollectionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Увеличивает версию коллекции и сообщает получателям об ее изменении. Если получателей нет, событие не создается.
+     *
+     * @param operation вид изменения
+     * @param id        ID элемента или null
+     * @param element   новое значение элемента или null
+     */
+    protected void fireChange(ChangeEvent.Operation operation, Long id, T element) {
+        changed();
+        if (listeners.isEmpty()) return;
+        ChangeEvent event = new ChangeEvent(operation, id, element);
+        for (CollectionListener listener : listeners) {
+            listener.collectionChanged(event);
+        }
+    }
+
+    /**
+     * Возвращает порядок элементов по имени, а при совпадении имен — по ID.
+     * ID различает элементы с одинаковыми именами, поэтому порядок подходит для {@link java.util.TreeSet}.
+     *
+     * @return компаратор по имени и ID
+     */
+    protected Comparator<T> nameOrder() {
+        // Невалидные элементы из файла могут быть без имени или ID; их отбросит validateAll
+        return Comparator.comparing(T::getName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                .thenComparing(this::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+
     /**
      * Метод для создания коллекции. Должен быть реализован в классах-наследниках.
      *
@@ -71,8 +250,9 @@ public abstract class CollectionManager<T extends Element & Comparable<T>> {
             }
         }
 
+        changed();
         if (!isValid || !duplicateIds.isEmpty()) {
-            collection = validCollection;
+            setCollection(validCollection);
             if (!isValid) {
                 logger.info("Имеются невалидные элементы. Коллекция изменена.");
             }
@@ -81,7 +261,7 @@ public abstract class CollectionManager<T extends Element & Comparable<T>> {
             }
         } else {
             logger.info("Все элементы коллекции валидны.");
-            collection = validCollection;
+            setCollection(validCollection);
         }
     }
 
@@ -102,20 +282,89 @@ public abstract class CollectionManager<T extends Element & Comparable<T>> {
      * @return true, если элемент существует, иначе false.
      */
     public boolean checkExist(Long id) {
-        for (T element : collection) {
-            if (getId(element).equals(id)) return true;
-        }
-        return false;
+        return id != null && byId.containsKey(id);
     }
 
     /**
-     * Возвращает коллекцию.
+     * Возвращает коллекцию только для чтения.
      *
      * @return коллекция.
      */
     public Collection<T> getCollection() {
+        return Collections.unmodifiableCollection(collection);
+    }
+
+    /**
+     * Возвращает неизменяемый снимок коллекции в порядке {@link #nameOrder()}. Вызывать можно из любого потока
+     * без блокировок: снимок не меняется, а все элементы одного изменения появляются в нем одновременно.
+     * Версия {@link #getVersion()}, прочитанная до снимка, не новее него.
+     *
+     * @return текущий снимок коллекции
+     */
+    public PersistentTreeSet<T> snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Возвращает саму коллекцию, созданную {@link #createCollection()}, для наследников, которым нужен
+     * ее конкретный тип. Изменять коллекцию можно только через методы менеджера, иначе разойдутся индексы.
+     *
+     * @return коллекция
+     */
+    protected Collection<T> collection() {
         return collection;
     }
+
+    /**
+     * Заменяет содержимое коллекции и перестраивает индексы.
+     *
+     * @param elements новые элементы коллекции
+     */
+    protected void setCollection(Collection<T> elements) {
+        collection.clear();
+        byId.clear();
+        byOrder.clear();
+        onCleared();
+        for (T element : elements) {
+            if (collection.add(element)) indexAdded(element);
+        }
+        snapshot = PersistentTreeSet.of(nameOrder(), collection);
+        changed();
+    }
+
+    /**
+     * Вызывается после добавления элемента в коллекцию, в том числе при загрузке и замене элемента.
+     *
+     * @param element добавленный элемент
+     */
+    protected void onAdded(T element) {
+    }
+
+    /**
+     * Вызывается после удаления элемента из коллекции, в том числе при замене элемента.
+     *
+     * @param element удаленный элемент в том виде, в котором он хранился в коллекции
+     */
+    protected void onRemoved(T element) {
+    }
+
+    /**
+     * Вызывается после очистки коллекции.
+     */
+    protected void onCleared() {
+    }
+
+    private void indexAdded(T element) {
+        if (getId(element) != null) byId.put(getId(element), element);
+        byOrder.add(element);
+        onAdded(element);
+    }
+
+    private void indexRemoved(T element) {
+        if (getId(element) != null) byId.remove(getId(element));
+        byOrder.remove(element);
+        onRemoved(element);
+    }
     /**
      * Возвращает имя типа коллекции.
      *
@@ -141,6 +390,7 @@ public abstract class CollectionManager<T extends Element & Comparable<T>> {
      */
     public T getLast() {
         if (collection.isEmpty()) return null;
+        if (collection instanceof NavigableSet<T> sorted) return sorted.last();
         T lastElement = null;
         for (T element : collection) {
             lastElement = element;
@@ -155,10 +405,69 @@ public abstract class CollectionManager<T extends Element & Comparable<T>> {
      * @return элемент по его ID или null.
      */
     public T getById(Long id) {
-        for (T element : collection) {
-            if (getId(element).equals(id)) return element;
+        return id == null ? null : byId.get(id);
+    }
+
+    /**
+     * Возвращает наименьший в естественном порядке элемент.
+     *
+     * @return минимальный элемент или null, если коллекция пуста
+     */
+    public T getMin() {
+        return byOrder.isEmpty() ? null : byOrder.first();
+    }
+
+    /**
+     * Удаляет за один проход все элементы, меньшие заданного, которые подходят под условие.
+     * Обходятся только элементы из начала индекса естественного порядка, меньшие заданного.
+     *
+     * @param bound  граница, сама не удаляется
+     * @param filter условие удаления, например принадлежность пользователю
+     * @return удаленные элементы
+     */
+    public List<T> removeLower(T bound, Predicate<T> filter) {
+        return removeRange(byOrder.iterator(), element -> element.compareTo(bound) < 0, filter);
+    }
+
+    /**
+     * Удаляет за один проход все элементы, большие заданного, которые подходят под условие.
+     * Обходятся только элементы из конца индекса естественного порядка, большие заданного.
+     *
+     * @param bound  граница, сама не удаляется
+     * @param filter условие удаления, например принадлежность пользователю
+     * @return удаленные элементы
+     */
+    public List<T> removeGreater(T bound, Predicate<T> filter) {
+        return removeRange(byOrder.descendingIterator(), element -> element.compareTo(bound) > 0, filter);
+    }
+
+    /**
+     * Удаляет все элементы, которые подходят под условие. Как и при удалении диапазона, снимок коллекции
+     * публикуется один раз, поэтому читающие его без блокировки не увидят коллекцию, очищенную наполовину.
+     *
+     * @param filter условие удаления, например принадлежность пользователю
+     * @return удаленные элементы
+     */
+    public List<T> removeIf(Predicate<T> filter) {
+        return removeRange(byOrder.iterator(), element -> true, filter);
+    }
+
+    private List<T> removeRange(Iterator<T> iterator, Predicate<T> inRange, Predicate<T> filter) {
+        List<T> range = new ArrayList<>();
+        while (iterator.hasNext()) {
+            T element = iterator.next();
+            if (!inRange.test(element)) break;
+            if (filter.test(element)) range.add(element);
+        }
+        PersistentTreeSet<T> updated = snapshot;
+        for (T element : range) {
+            updated = updated.without(element);
+            removeElement(element);
         }
-        return null;
+        // Весь диапазон исчезает из снимка разом, до уведомления слушателей
+        snapshot = updated;
+        range.forEach(element -> fireChange(ChangeEvent.Operation.REMOVE, getId(element), null));
+        return range;
     }
 
     /**
@@ -170,18 +479,49 @@ public abstract class CollectionManager<T extends Element & Comparable<T>> {
     public Long addToCollection(T element) {
         element.setId(nextId++);
         collection.add(element);
-        sortCollection(); // Сортировка после добавления элемента
+        indexAdded(element);
+        snapshot = snapshot.with(element);
+        fireChange(ChangeEvent.Operation.ADD, element.getId(), element);
         return element.getId();
     }
 
+    /**
+     * Заменяет элемент коллекции новым значением, сохраняя его ID.
+     *
+     * @param existing    элемент коллекции
+     * @param replacement новое значение элемента
+     */
+    public void replaceInCollection(T existing, T replacement) {
+        Long id = getId(existing);
+        replacement.setId(id);
+        collection.remove(existing);
+        indexRemoved(existing);
+        collection.add(replacement);
+        indexAdded(replacement);
+        snapshot = snapshot.without(existing).with(replacement);
+        fireChange(ChangeEvent.Operation.UPDATE, id, replacement);
+    }
+
     /**
      * Удаляет элемент из коллекции.
      *
      * @param element элемент для удаления.
      */
     public void removeFromCollection(T element) {
-        collection.remove(element);
-        sortCollection(); // Сортировка после удаления элемента
+        T removed = removeElement(element);
+        if (removed != null) {
+            snapshot = snapshot.without(removed);
+            fireChange(ChangeEvent.Operation.REMOVE, getId(element), null);
+        }
+    }
+
+    private T removeElement(T element) {
+        // Индексы и снимок хранят тот экземпляр, который лежит в коллекции, а не равный ему переданный
+        T stored = getById(getId(element));
+        if (!collection.remove(element)) return null;
+        if (stored == null) stored = element;
+        indexRemoved(stored);
+        return stored;
     }
 
     /**
@@ -189,6 +529,11 @@ public abstract class CollectionManager<T extends Element & Comparable<T>> {
      */
     public void clearCollection() {
         collection.clear();
+        byId.clear();
+        byOrder.clear();
+        onCleared();
+        snapshot = PersistentTreeSet.empty(nameOrder());
+        fireChange(ChangeEvent.Operation.CLEAR, null, null);
     }
 
     /**
@@ -199,26 +544,6 @@ public abstract class CollectionManager<T extends Element & Comparable<T>> {
      */
     protected abstract Long getId(T element);
 
-    /**
-     * Сортирует коллекцию по имени.
-     */
-    public void sortCollection() {
-        Collection<T> sortedCollection = collection.stream()
-                .sorted(Comparator.comparing(T::getName))
-                .collect(Collectors.toList());
-        setCollection(sortedCollection);
-    }
-
-    /**
-     * Устанавливает коллекцию.
-     *
-     * @param collection новая коллекция
-     */
-    private void setCollection(Collection<T> collection) {
-        this.collection.clear();
-        this.collection.addAll(collection);
-    }
-
     @Override
     public String toString() {
         if (collection.isEmpty()) return "Коллекция пуста!";
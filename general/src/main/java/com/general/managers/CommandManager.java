@@ -1,22 +1,39 @@
 package com.general.managers;
 
 import com.general.command.Command;
+import com.general.command.ReadOnly;
+import com.general.command.Streamable;
 import com.general.network.Request;
 import com.general.network.Response;
+import com.general.network.StreamedResponse;
 import lombok.Getter;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Управляет командами.инвоке
+ * Команды выполняются под блокировкой коллекции: {@link ReadOnly} — параллельно под блокировкой чтения
+ * или оптимистично, остальные — под исключительной блокировкой записи. Поэтому {@link #handle} и {@link #stream}
+ * можно вызывать из нескольких потоков; команды регистрируются до начала их выполнения.
  */
 @Getter
 public class CommandManager {
     private final Map<String, Command> commands = new HashMap<>();
     private final List<String> commandHistory = new ArrayList<>();
+    private final CollectionManager<?> collectionManager;
+
+    /**
+     * Создает менеджер команд.
+     *
+     * @param collectionManager коллекция, с которой работают команды; ее блокировкой защищается их выполнение
+     */
+    public CommandManager(CollectionManager<?> collectionManager) {
+        this.collectionManager = collectionManager;
+    }
 
     /**
      * Добавляет команду
@@ -37,24 +54,52 @@ public class CommandManager {
         commandHistory.add(command);
     }
 
-    public void getCommand(String command) {
-        commands.get(command);
+    /**
+     * Возвращает команду по имени.
+     *
+     * @param command Имя команды.
+     * @return Команда или null, если такой команды нет.
+     */
+    public Command getCommand(String command) {
+        return commands.get(command);
     }
 
     public Response handle(Request request) {
-        if (commands.get(request.getCommand()) == null) {
+        Command command = commands.get(request.getCommand());
+        if (command == null) {
             return new Response(false, "Команда не найдена, введите help для справки");
         } else {
-            return commands.get(request.getCommand()).execute(request);
+            return locked(command, () -> command.execute(request));
         }
     }
 
+    /**
+     * Выполняет запрос в потоковом режиме. Команды, не поддерживающие потоковые ответы,
+     * выполняются обычным образом, и их ответ становится завершающим ответом потока.
+     *
+     * @param request Запрос.
+     * @return Потоковый результат.
+     */
+    public StreamedResponse stream(Request request) {
+        Command command = commands.get(request.getCommand());
+        if (command instanceof Streamable streamable) {
+            return locked(command, () -> streamable.stream(request));
+        }
+        return StreamedResponse.of(handle(request));
+    }
+
+    private <R> R locked(Command command, Supplier<R> action) {
+        if (!(command instanceof ReadOnly readOnly)) return collectionManager.write(action);
+        if (readOnly.lockFree()) return action.get();
+        return readOnly.optimistic() ? collectionManager.readOptimistic(action) : collectionManager.read(action);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("Command List:\n");
         commands.values().forEach(command -> {
-            sb.append(String.format(" %-35s%-1s%n", command.getName(), command.getDescription()));
+            sb.append(String.format(" %-41s%-1s%n", command.getName(), command.getDescription()));
         });
         return sb.toString();
     }
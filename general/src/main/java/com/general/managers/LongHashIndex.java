@@ -0,0 +1,155 @@
+package com.general.managers;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица с ключами {@code long} и открытой адресацией для поиска элементов коллекции по ID.
+ * Ключи хранятся в массиве примитивов, поэтому при поиске не создаются объекты {@link Long} и не вызывается
+ * {@code equals}. Коллизии разрешаются линейным пробированием; при удалении следующие элементы цепочки
+ * сдвигаются назад, так что таблица не засоряется удаленными ячейками. Таблица расширяется вдвое,
+ * когда заполнена больше чем на {@link #MAX_LOAD}.
+ * <p>
+ * Не потокобезопасна: изменяется вместе с коллекцией {@link CollectionManager}.
+ *
+ * @param <V> тип элементов
+ */
+public class LongHashIndex<V> {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float MAX_LOAD = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Создает пустую таблицу.
+     */
+    public LongHashIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Возвращает элемент по ключу.
+     *
+     * @param key ключ
+     * @return элемент или null, если ключа нет
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        for (int slot = slot(key); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return (V) values[slot];
+        }
+        return null;
+    }
+
+    /**
+     * Проверяет, есть ли ключ в таблице.
+     *
+     * @param key ключ
+     * @return true, если ключ есть
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Сохраняет элемент под ключом, заменяя прежний.
+     *
+     * @param key   ключ
+     * @param value элемент, не null
+     * @return прежний элемент или null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) throw new IllegalArgumentException("Элемент не может быть null");
+        int slot = slot(key);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > MAX_LOAD * keys.length) resize(keys.length * 2);
+        return null;
+    }
+
+    /**
+     * Удаляет ключ из таблицы.
+     *
+     * @param key ключ
+     * @return удаленный элемент или null, если ключа не было
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = slot(key);
+        while (values[slot] != null && keys[slot] != key) slot = (slot + 1) & mask;
+        if (values[slot] == null) return null;
+
+        V removed = (V) values[slot];
+        // Сдвигаем назад элементы, которые при вставке прошли мимо освободившейся ячейки
+        int hole = slot;
+        for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Возвращает количество ключей.
+     *
+     * @return количество ключей
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Удаляет все ключи и возвращает таблице начальный размер.
+     */
+    public void clear() {
+        if (keys.length == INITIAL_CAPACITY) {
+            Arrays.fill(values, null);
+            size = 0;
+        } else {
+            allocate(INITIAL_CAPACITY);
+        }
+    }
+
+    private int slot(long key) {
+        // Перемешивание Фибоначчи: последовательные ID распределяются по всей таблице
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldSize = size;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) continue;
+            int slot = slot(oldKeys[i]);
+            while (values[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+        size = oldSize;
+    }
+}
@@ -0,0 +1,226 @@
+package com.general.managers;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Неизменяемое упорядоченное множество на AVL-дереве с копированием пути.
+ * Добавление и удаление не меняют исходное множество, а возвращают новое за O(log n): копируются только узлы
+ * на пути от корня к изменяемому месту, остальные поддеревья общие у старой и новой версий. Поэтому старую
+ * версию можно обходить из любого потока без блокировок, пока строится новая.
+ * <p>
+ * Методы изменения {@link Collection} не поддерживаются.
+ *
+ * @param <T> тип элементов
+ */
+public final class PersistentTreeSet<T> extends AbstractCollection<T> {
+    private final Comparator<? super T> comparator;
+    private final Node<T> root;
+
+    private static final class Node<T> {
+        final T value;
+        final Node<T> left;
+        final Node<T> right;
+        final int height;
+        final int size;
+
+        Node(T value, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    private PersistentTreeSet(Comparator<? super T> comparator, Node<T> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    /**
+     * Возвращает пустое множество.
+     *
+     * @param comparator порядок элементов; равные по нему элементы считаются одним
+     * @param <T>        тип элементов
+     * @return пустое множество
+     */
+    public static <T> PersistentTreeSet<T> empty(Comparator<? super T> comparator) {
+        return new PersistentTreeSet<>(comparator, null);
+    }
+
+    /**
+     * Строит множество из элементов за O(n log n) на сортировку и O(n) на построение сбалансированного дерева.
+     *
+     * @param comparator порядок элементов
+     * @param elements   элементы; из равных остается последний
+     * @param <T>        тип элементов
+     * @return новое множество
+     */
+    public static <T> PersistentTreeSet<T> of(Comparator<? super T> comparator, Collection<? extends T> elements) {
+        List<T> sorted = new ArrayList<>(elements);
+        sorted.sort(comparator);
+        List<T> distinct = new ArrayList<>(sorted.size());
+        for (T element : sorted) {
+            if (!distinct.isEmpty() && comparator.compare(distinct.get(distinct.size() - 1), element) == 0) {
+                distinct.set(distinct.size() - 1, element);
+            } else {
+                distinct.add(element);
+            }
+        }
+        return new PersistentTreeSet<>(comparator, build(distinct, 0, distinct.size() - 1));
+    }
+
+    /**
+     * Возвращает множество с добавленным элементом; равный элемент заменяется.
+     *
+     * @param element элемент
+     * @return новое множество
+     */
+    public PersistentTreeSet<T> with(T element) {
+        return new PersistentTreeSet<>(comparator, insert(root, element));
+    }
+
+    /**
+     * Возвращает множество без элемента.
+     *
+     * @param element элемент
+     * @return новое множество или это же, если элемента не было
+     */
+    public PersistentTreeSet<T> without(T element) {
+        Node<T> updated = delete(root, element);
+        return updated == root ? this : new PersistentTreeSet<>(comparator, updated);
+    }
+
+    /**
+     * Возвращает наименьший элемент.
+     *
+     * @return наименьший элемент или null, если множество пусто
+     */
+    public T first() {
+        Node<T> node = root;
+        if (node == null) return null;
+        while (node.left != null) node = node.left;
+        return node.value;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        Node<T> node = root;
+        while (node != null) {
+            int comparison = comparator.compare((T) o, node.value);
+            if (comparison == 0) return true;
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    /**
+     * Обходит элементы по возрастанию. Итератор видит ровно эту версию множества.
+     *
+     * @return итератор по элементам
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private final Deque<Node<T>> path = new ArrayDeque<>();
+
+            {
+                descendLeft(root);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (path.isEmpty()) throw new NoSuchElementException();
+                Node<T> node = path.pop();
+                descendLeft(node.right);
+                return node.value;
+            }
+
+            private void descendLeft(Node<T> node) {
+                for (; node != null; node = node.left) path.push(node);
+            }
+        };
+    }
+
+    private Node<T> insert(Node<T> node, T element) {
+        if (node == null) return new Node<>(element, null, null);
+        int comparison = comparator.compare(element, node.value);
+        if (comparison < 0) return balance(node.value, insert(node.left, element), node.right);
+        if (comparison > 0) return balance(node.value, node.left, insert(node.right, element));
+        return new Node<>(element, node.left, node.right);
+    }
+
+    private Node<T> delete(Node<T> node, T element) {
+        if (node == null) return null;
+        int comparison = comparator.compare(element, node.value);
+        if (comparison < 0) {
+            Node<T> left = delete(node.left, element);
+            return left == node.left ? node : balance(node.value, left, node.right);
+        }
+        if (comparison > 0) {
+            Node<T> right = delete(node.right, element);
+            return right == node.right ? node : balance(node.value, node.left, right);
+        }
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+        Node<T> successor = node.right;
+        while (successor.left != null) successor = successor.left;
+        return balance(successor.value, node.left, deleteMin(node.right));
+    }
+
+    private static <T> Node<T> deleteMin(Node<T> node) {
+        if (node.left == null) return node.right;
+        return balance(node.value, deleteMin(node.left), node.right);
+    }
+
+    private static <T> Node<T> balance(T value, Node<T> left, Node<T> right) {
+        if (height(left) > height(right) + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.value, left.left, new Node<>(value, left.right, right));
+            }
+            Node<T> pivot = left.right;
+            return new Node<>(pivot.value, new Node<>(left.value, left.left, pivot.left), new Node<>(value, pivot.right, right));
+        }
+        if (height(right) > height(left) + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.value, new Node<>(value, left, right.left), right.right);
+            }
+            Node<T> pivot = right.left;
+            return new Node<>(pivot.value, new Node<>(value, left, pivot.left), new Node<>(right.value, pivot.right, right.right));
+        }
+        return new Node<>(value, left, right);
+    }
+
+    private static <T> Node<T> build(List<T> sorted, int from, int to) {
+        if (from > to) return null;
+        int middle = (from + to) >>> 1;
+        return new Node<>(sorted.get(middle), build(sorted, from, middle - 1), build(sorted, middle + 1, to));
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+}
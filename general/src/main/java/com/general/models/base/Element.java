@@ -6,6 +6,23 @@ public abstract class Element implements Validatable, Serializable {
     private Long id;
     public abstract String getName();
 
+    /**
+     * @return Идентификатор пользователя-владельца или null, если у элемента нет владельца.
+     */
+    public abstract Integer getUserId();
+
+    public abstract void setUserId(Integer userId);
+
+    /**
+     * Проверяет, может ли пользователь изменять элемент: элементы без владельца доступны всем.
+     *
+     * @param userId Идентификатор пользователя из сессии или null, если вход не выполнен.
+     * @return true, если элемент не имеет владельца или принадлежит пользователю.
+     */
+    public boolean isOwnedBy(Integer userId) {
+        return getUserId() == null || getUserId().equals(userId);
+    }
+
     public Long getId() {
         return id;
     }
@@ -0,0 +1,552 @@
+package com.general.network;
+
+import com.general.models.Coordinates;
+import com.general.models.Flat;
+import com.general.models.House;
+import com.general.models.View;
+import com.general.models.base.Element;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Компактный двоичный формат сообщений {@link Sendable} — замена стандартной сериализации Java для передачи по сети.
+ * Формат знает схему моделей и записывает их поле за полем: целые числа — в виде varint (знаковые — в зигзаг-кодировке),
+ * строки — длиной и байтами UTF-8, необязательные поля — битами присутствия, дата — номером дня от начала эпохи.
+ * Описания классов и обертки примитивов не записываются.
+ * <p>
+ * Сообщение записывается в переданный буфер; нужный размер заранее вычисляет {@link #encodedSize(Sendable)}.
+ * Идентификатор запроса не кодируется: он передается в заголовке кадра {@link Frame}.
+ * В поле данных поддерживаются null, строки, массивы строк, Long, Integer, {@link Flat}, {@link Handshake},
+ * {@link SessionToken} и словари из строк в Long; для других типов кодирование завершается исключением.
+ * Экземпляр не хранит состояния и может использоваться из нескольких потоков.
+ */
+public class BinaryCodec implements Codec {
+    private static final byte REQUEST = 0;
+    private static final byte RESPONSE = 1;
+    private static final byte STREAM_CHUNK = 2;
+    private static final byte CHANGE_EVENT = 3;
+
+    private static final int SUCCESS = 1;
+    private static final int LOGIN = 2;
+    private static final int PASSWORD = 4;
+    private static final int USER_ID = 8;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte STRING_ARRAY = 4;
+    private static final byte FLAT = 5;
+    private static final byte HANDSHAKE = 6;
+    private static final byte SESSION_TOKEN = 7;
+    private static final byte STRING_LONG_MAP = 8;
+
+    private static final int FLAT_ID = 1;
+    private static final int FLAT_COORDINATES = 2;
+    private static final int FLAT_CREATION_DATE = 4;
+    private static final int FLAT_AREA = 8;
+    private static final int FLAT_KITCHEN_AREA = 16;
+    private static final int FLAT_HOUSE = 32;
+    private static final int FLAT_USER_ID = 64;
+
+    private static final int HOUSE_YEAR = 1;
+    private static final int HOUSE_FLATS_ON_FLOOR = 2;
+
+    private static final View[] VIEWS = View.values();
+    private static final ChangeEvent.Operation[] OPERATIONS = ChangeEvent.Operation.values();
+
+    @Override
+    public int getId() {
+        return Codecs.BINARY_ID;
+    }
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    /**
+     * Записывает сообщение в поток через промежуточный массив. Если место под сообщение выделяет вызывающая сторона,
+     * эффективнее вызвать {@link #encode(Sendable, ByteBuffer)} напрямую.
+     */
+    @Override
+    public void encode(Sendable message, OutputStream out) throws IOException {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.allocate(encodedSize(message));
+            encode(message, buffer);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        out.write(buffer.array(), 0, buffer.position());
+    }
+
+    @Override
+    public Sendable decode(byte[] body) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        try {
+            Sendable message = decode(buffer);
+            if (buffer.hasRemaining()) throw new StreamCorruptedException("Лишние данные после сообщения");
+            return message;
+        } catch (IllegalArgumentException e) {
+            throw new StreamCorruptedException(e.getMessage());
+        }
+    }
+
+    /**
+     * Вычисляет размер сообщения в двоичном формате.
+     *
+     * @param message сообщение
+     * @return размер в байтах
+     * @throws IllegalArgumentException если тип данных сообщения не поддерживается
+     */
+    public int encodedSize(Sendable message) {
+        int size = 2 + stringSize(message.getMessage()) + valueSize(message.getData());
+        if (message.getLogin() != null) size += stringSize(message.getLogin());
+        if (message.getPassword() != null) size += stringSize(message.getPassword());
+        if (message.getUserId() != null) size += varintSize(zigzag(message.getUserId()));
+        if (message instanceof ChangeEvent event) size += 1 + nullableLongSize(event.getId());
+        return size;
+    }
+
+    /**
+     * Записывает сообщение в буфер с его текущей позиции.
+     *
+     * @param message сообщение
+     * @param buffer  буфер, в котором осталось не меньше {@link #encodedSize(Sendable)} байтов
+     * @throws BufferOverflowException  если сообщение не помещается в буфер
+     * @throws IllegalArgumentException если тип данных сообщения не поддерживается
+     */
+    public void encode(Sendable message, ByteBuffer buffer) {
+        byte kind;
+        if (message instanceof Request) kind = REQUEST;
+        else if (message instanceof ChangeEvent) kind = CHANGE_EVENT;
+        else if (message instanceof StreamChunk) kind = STREAM_CHUNK;
+        else if (message instanceof Response) kind = RESPONSE;
+        else throw new IllegalArgumentException("Тип сообщения не поддерживается: " + message.getClass().getName());
+
+        int flags = (message.isSuccess() ? SUCCESS : 0)
+                | (message.getLogin() != null ? LOGIN : 0)
+                | (message.getPassword() != null ? PASSWORD : 0)
+                | (message.getUserId() != null ? USER_ID : 0);
+        buffer.put(kind);
+        buffer.put((byte) flags);
+        putString(buffer, message.getMessage());
+        if (message.getLogin() != null) putString(buffer, message.getLogin());
+        if (message.getPassword() != null) putString(buffer, message.getPassword());
+        if (message.getUserId() != null) putVarint(buffer, zigzag(message.getUserId()));
+        if (message instanceof ChangeEvent event) {
+            buffer.put((byte) event.getOperation().ordinal());
+            putNullableLong(buffer, event.getId());
+        }
+        putValue(buffer, message.getData());
+    }
+
+    /**
+     * Читает сообщение из буфера с его текущей позиции.
+     *
+     * @param buffer буфер с сообщением
+     * @return сообщение
+     * @throws IllegalArgumentException если данные не являются сообщением в двоичном формате
+     */
+    public Sendable decode(ByteBuffer buffer) {
+        try {
+            byte kind = buffer.get();
+            int flags = buffer.get();
+            String message = getString(buffer);
+            String login = (flags & LOGIN) != 0 ? getString(buffer) : null;
+            String password = (flags & PASSWORD) != 0 ? getString(buffer) : null;
+            Integer userId = (flags & USER_ID) != 0 ? unzigzag(getVarint(buffer)) : null;
+            ChangeEvent.Operation operation = null;
+            Long id = null;
+            if (kind == CHANGE_EVENT) {
+                operation = OPERATIONS[buffer.get()];
+                id = getNullableLong(buffer);
+            }
+            Object data = getValue(buffer);
+
+            boolean success = (flags & SUCCESS) != 0;
+            Sendable result = switch (kind) {
+                case REQUEST -> new Request(success, message, data);
+                case RESPONSE -> new Response(success, message, data);
+                case STREAM_CHUNK -> new StreamChunk(message);
+                case CHANGE_EVENT -> new ChangeEvent(operation, id, (Element) data);
+                default -> throw new IllegalArgumentException("Неизвестный тип сообщения: " + kind);
+            };
+            result.setLogin(login);
+            result.setPassword(password);
+            result.setUserId(userId);
+            return result;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException e) {
+            throw new IllegalArgumentException("Поврежденное сообщение", e);
+        }
+    }
+
+    private static int valueSize(Object value) {
+        if (value == null) return 1;
+        if (value instanceof String string) return 1 + stringSize(string);
+        if (value instanceof Long number) return 1 + varlongSize(zigzag(number));
+        if (value instanceof Integer number) return 1 + varintSize(zigzag(number));
+        if (value instanceof String[] strings) {
+            int size = 1 + varintSize(strings.length);
+            for (String string : strings) size += stringSize(string);
+            return size;
+        }
+        if (value instanceof Flat flat) return 1 + flatSize(flat);
+        if (value instanceof Handshake handshake) {
+            int[] codecs = handshake.getCodecs() == null ? new int[0] : handshake.getCodecs();
+            int size = 1 + varintSize(handshake.getFeatures()) + varintSize(codecs.length);
+            for (int codec : codecs) size += varintSize(codec);
+            return size;
+        }
+        if (value instanceof SessionToken token) return 1 + 8 + varintSize(token.getUserId());
+        if (value instanceof Map<?, ?> map) {
+            int size = 1 + varintSize(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += stringSize((String) entry.getKey()) + varlongSize(zigzag((Long) entry.getValue()));
+            }
+            return size;
+        }
+        throw new IllegalArgumentException("Тип данных не поддерживается: " + value.getClass().getName());
+    }
+
+    private static void putValue(ByteBuffer buffer, Object value) {
+        if (value == null) {
+            buffer.put(NULL);
+        } else if (value instanceof String string) {
+            buffer.put(STRING);
+            putString(buffer, string);
+        } else if (value instanceof Long number) {
+            buffer.put(LONG);
+            putVarlong(buffer, zigzag(number));
+        } else if (value instanceof Integer number) {
+            buffer.put(INTEGER);
+            putVarint(buffer, zigzag(number));
+        } else if (value instanceof String[] strings) {
+            buffer.put(STRING_ARRAY);
+            putVarint(buffer, strings.length);
+            for (String string : strings) putString(buffer, string);
+        } else if (value instanceof Flat flat) {
+            buffer.put(FLAT);
+            putFlat(buffer, flat);
+        } else if (value instanceof Handshake handshake) {
+            buffer.put(HANDSHAKE);
+            int[] codecs = handshake.getCodecs() == null ? new int[0] : handshake.getCodecs();
+            putVarint(buffer, handshake.getFeatures());
+            putVarint(buffer, codecs.length);
+            for (int codec : codecs) putVarint(buffer, codec);
+        } else if (value instanceof SessionToken token) {
+            buffer.put(SESSION_TOKEN);
+            buffer.putLong(token.getToken());
+            putVarint(buffer, token.getUserId());
+        } else if (value instanceof Map<?, ?> map) {
+            buffer.put(STRING_LONG_MAP);
+            putVarint(buffer, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                putString(buffer, (String) entry.getKey());
+                putVarlong(buffer, zigzag((Long) entry.getValue()));
+            }
+        } else {
+            throw new IllegalArgumentException("Тип данных не поддерживается: " + value.getClass().getName());
+        }
+    }
+
+    private static Object getValue(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return getString(buffer);
+            case LONG:
+                return unzigzag(getVarlong(buffer));
+            case INTEGER:
+                return unzigzag(getVarint(buffer));
+            case STRING_ARRAY: {
+                String[] strings = new String[checkedCount(buffer)];
+                for (int i = 0; i < strings.length; i++) strings[i] = getString(buffer);
+                return strings;
+            }
+            case FLAT:
+                return getFlat(buffer);
+            case HANDSHAKE: {
+                int features = getVarint(buffer);
+                int[] codecs = new int[checkedCount(buffer)];
+                for (int i = 0; i < codecs.length; i++) codecs[i] = getVarint(buffer);
+                return new Handshake(features, codecs);
+            }
+            case SESSION_TOKEN:
+                return new SessionToken(buffer.getLong(), getVarint(buffer));
+            case STRING_LONG_MAP: {
+                int count = checkedCount(buffer);
+                Map<String, Long> map = new LinkedHashMap<>();
+                for (int i = 0; i < count; i++) map.put(getString(buffer), unzigzag(getVarlong(buffer)));
+                return map;
+            }
+            default:
+                throw new IllegalArgumentException("Неизвестный тип данных: " + tag);
+        }
+    }
+
+    private static int flatSize(Flat flat) {
+        int size = 1 + stringSize(flat.getName()) + varintSize(zigzag(flat.getNumberOfRooms()))
+                + varintSize(zigzag(flat.getHeight())) + 1;
+        if (flat.getId() != null) size += varlongSize(zigzag(flat.getId()));
+        if (flat.getCoordinates() != null) size += varlongSize(zigzag(flat.getCoordinates().getX())) + 4;
+        if (flat.getCreationDate() != null) size += varlongSize(zigzag(flat.getCreationDate().toEpochDay()));
+        if (flat.getArea() != null) size += varintSize(zigzag(flat.getArea()));
+        if (flat.getKitchenArea() != null) size += 4;
+        if (flat.getHouse() != null) size += houseSize(flat.getHouse());
+        if (flat.getUserId() != null) size += varintSize(zigzag(flat.getUserId()));
+        return size;
+    }
+
+    private static void putFlat(ByteBuffer buffer, Flat flat) {
+        int flags = (flat.getId() != null ? FLAT_ID : 0)
+                | (flat.getCoordinates() != null ? FLAT_COORDINATES : 0)
+                | (flat.getCreationDate() != null ? FLAT_CREATION_DATE : 0)
+                | (flat.getArea() != null ? FLAT_AREA : 0)
+                | (flat.getKitchenArea() != null ? FLAT_KITCHEN_AREA : 0)
+                | (flat.getHouse() != null ? FLAT_HOUSE : 0)
+                | (flat.getUserId() != null ? FLAT_USER_ID : 0);
+        buffer.put((byte) flags);
+        if (flat.getId() != null) putVarlong(buffer, zigzag(flat.getId()));
+        putString(buffer, flat.getName());
+        if (flat.getCoordinates() != null) {
+            putVarlong(buffer, zigzag(flat.getCoordinates().getX()));
+            buffer.putFloat(flat.getCoordinates().getY());
+        }
+        if (flat.getCreationDate() != null) putVarlong(buffer, zigzag(flat.getCreationDate().toEpochDay()));
+        if (flat.getArea() != null) putVarint(buffer, zigzag(flat.getArea()));
+        putVarint(buffer, zigzag(flat.getNumberOfRooms()));
+        putVarint(buffer, zigzag(flat.getHeight()));
+        if (flat.getKitchenArea() != null) buffer.putFloat(flat.getKitchenArea());
+        buffer.put((byte) (flat.getView() == null ? 0 : flat.getView().ordinal() + 1));
+        if (flat.getHouse() != null) putHouse(buffer, flat.getHouse());
+        if (flat.getUserId() != null) putVarint(buffer, zigzag(flat.getUserId()));
+    }
+
+    private static Flat getFlat(ByteBuffer buffer) {
+        int flags = buffer.get();
+        Flat flat = new Flat();
+        if ((flags & FLAT_ID) != 0) flat.setId(unzigzag(getVarlong(buffer)));
+        flat.setName(getString(buffer));
+        if ((flags & FLAT_COORDINATES) != 0) {
+            long x = unzigzag(getVarlong(buffer));
+            flat.setCoordinates(new Coordinates(x, buffer.getFloat()));
+        }
+        flat.setCreationDate((flags & FLAT_CREATION_DATE) != 0 ? LocalDate.ofEpochDay(unzigzag(getVarlong(buffer))) : null);
+        if ((flags & FLAT_AREA) != 0) flat.setArea(unzigzag(getVarint(buffer)));
+        flat.setNumberOfRooms(unzigzag(getVarint(buffer)));
+        flat.setHeight(unzigzag(getVarint(buffer)));
+        if ((flags & FLAT_KITCHEN_AREA) != 0) flat.setKitchenArea(buffer.getFloat());
+        int view = buffer.get();
+        if (view != 0) flat.setView(VIEWS[view - 1]);
+        if ((flags & FLAT_HOUSE) != 0) flat.setHouse(getHouse(buffer));
+        if ((flags & FLAT_USER_ID) != 0) flat.setUserId(unzigzag(getVarint(buffer)));
+        return flat;
+    }
+
+    private static int houseSize(House house) {
+        int size = 1 + stringSize(house.getName()) + varlongSize(zigzag(house.getNumberOfLifts()));
+        if (house.getYear() != null) size += varintSize(zigzag(house.getYear()));
+        if (house.getNumberOfFlatsOnFloor() != null) size += varlongSize(zigzag(house.getNumberOfFlatsOnFloor()));
+        return size;
+    }
+
+    private static void putHouse(ByteBuffer buffer, House house) {
+        int flags = (house.getYear() != null ? HOUSE_YEAR : 0)
+                | (house.getNumberOfFlatsOnFloor() != null ? HOUSE_FLATS_ON_FLOOR : 0);
+        buffer.put((byte) flags);
+        putString(buffer, house.getName());
+        if (house.getYear() != null) putVarint(buffer, zigzag(house.getYear()));
+        if (house.getNumberOfFlatsOnFloor() != null) putVarlong(buffer, zigzag(house.getNumberOfFlatsOnFloor()));
+        putVarlong(buffer, zigzag(house.getNumberOfLifts()));
+    }
+
+    private static House getHouse(ByteBuffer buffer) {
+        int flags = buffer.get();
+        House house = new House();
+        house.setName(getString(buffer));
+        if ((flags & HOUSE_YEAR) != 0) house.setYear(unzigzag(getVarint(buffer)));
+        if ((flags & HOUSE_FLATS_ON_FLOOR) != 0) house.setNumberOfFlatsOnFloor(unzigzag(getVarlong(buffer)));
+        house.setNumberOfLifts(unzigzag(getVarlong(buffer)));
+        return house;
+    }
+
+    /**
+     * Размер строки: varint (длина в байтах UTF-8 + 1, 0 — null) и байты UTF-8.
+     */
+    private static int stringSize(String string) {
+        if (string == null) return 1;
+        int length = utf8Length(string);
+        return varintSize(length + 1) + length;
+    }
+
+    private static int utf8Length(String string) {
+        int length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (!Character.isSurrogate(c)) {
+                length += 3;
+            } else if (isSurrogatePair(string, i)) {
+                length += 4;
+                i++;
+            } else {
+                length += 1;
+            }
+        }
+        return length;
+    }
+
+    private static boolean isSurrogatePair(String string, int index) {
+        return Character.isHighSurrogate(string.charAt(index)) && index + 1 < string.length()
+                && Character.isLowSurrogate(string.charAt(index + 1));
+    }
+
+    /**
+     * Записывает строку в UTF-8 прямо в буфер, без промежуточного массива.
+     * Непарный суррогат заменяется на '?', как это делает {@link String#getBytes(java.nio.charset.Charset)}.
+     */
+    private static void putString(ByteBuffer buffer, String string) {
+        if (string == null) {
+            buffer.put((byte) 0);
+            return;
+        }
+        putVarint(buffer, utf8Length(string) + 1);
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                buffer.put((byte) (0xE0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (isSurrogatePair(string, i)) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                buffer.put((byte) '?');
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = getVarint(buffer) - 1;
+        if (length < 0) return null;
+        if (length > buffer.remaining()) throw new BufferUnderflowException();
+        String string;
+        if (buffer.hasArray()) {
+            string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return string;
+    }
+
+    private static int checkedCount(ByteBuffer buffer) {
+        int count = getVarint(buffer);
+        // Каждый элемент занимает хотя бы один байт: большее количество означает поврежденные данные
+        if (count < 0 || count > buffer.remaining()) throw new BufferUnderflowException();
+        return count;
+    }
+
+    private static int nullableLongSize(Long value) {
+        return value == null ? 1 : 1 + varlongSize(zigzag(value));
+    }
+
+    private static void putNullableLong(ByteBuffer buffer, Long value) {
+        if (value == null) {
+            buffer.put((byte) 0);
+        } else {
+            buffer.put((byte) 1);
+            putVarlong(buffer, zigzag(value));
+        }
+    }
+
+    private static Long getNullableLong(ByteBuffer buffer) {
+        return buffer.get() == 0 ? null : unzigzag(getVarlong(buffer));
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int varintSize(int value) {
+        return (38 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+    }
+
+    private static int varlongSize(long value) {
+        return (70 - Long.numberOfLeadingZeros(value | 1)) / 7;
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void putVarlong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Слишком длинное число varint");
+    }
+
+    private static long getVarlong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Слишком длинное число varint");
+    }
+}
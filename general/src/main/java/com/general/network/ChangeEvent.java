@@ -0,0 +1,84 @@
+package com.general.network;
+
+import com.general.models.base.Element;
+import lombok.Getter;
+
+/**
+ * Событие изменения коллекции, которое сервер сам отправляет подписанным клиентам (см. {@link #SUBSCRIBE_COMMAND}).
+ * События не являются ответами на запросы и приходят без идентификатора запроса в любой момент между ответами.
+ * Событие {@link Operation#RESYNC} означает, что клиент не успевал принимать события и часть их была пропущена:
+ * состояние коллекции нужно получить заново, например командой show.
+ */
+@Getter
+public class ChangeEvent extends Response {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Имя служебной команды подписки на изменения коллекции.
+     */
+    public static final String SUBSCRIBE_COMMAND = "subscribe";
+
+    /**
+     * Имя служебной команды отмены подписки.
+     */
+    public static final String UNSUBSCRIBE_COMMAND = "unsubscribe";
+
+    /**
+     * Вид изменения коллекции.
+     */
+    public enum Operation {
+        ADD, UPDATE, REMOVE, CLEAR, RESYNC
+    }
+
+    /**
+     * Вид изменения.
+     */
+    private final Operation operation;
+
+    /**
+     * ID измененного элемента; null для {@link Operation#CLEAR} и {@link Operation#RESYNC}.
+     */
+    private final Long id;
+
+    /**
+     * Создает событие изменения коллекции.
+     *
+     * @param operation вид изменения
+     * @param id        ID элемента или null
+     * @param element   новое значение элемента для {@link Operation#ADD} и {@link Operation#UPDATE}, иначе null
+     */
+    public ChangeEvent(Operation operation, Long id, Element element) {
+        super(true, null, element);
+        this.operation = operation;
+        this.id = id;
+    }
+
+    /**
+     * Создает уведомление о том, что события были пропущены и состояние коллекции нужно получить заново.
+     *
+     * @return событие {@link Operation#RESYNC}
+     */
+    public static ChangeEvent resync() {
+        return new ChangeEvent(Operation.RESYNC, null, null);
+    }
+
+    /**
+     * Возвращает новое значение элемента.
+     *
+     * @return элемент или null
+     */
+    public Element getElement() {
+        return (Element) data;
+    }
+
+    @Override
+    public String toString() {
+        return switch (operation) {
+            case ADD -> "Добавлен элемент " + id + ":\n" + data;
+            case UPDATE -> "Обновлен элемент " + id + ":\n" + data;
+            case REMOVE -> "Удален элемент " + id;
+            case CLEAR -> "Коллекция очищена";
+            case RESYNC -> "Часть изменений пропущена, получите коллекцию заново (show)";
+        };
+    }
+}
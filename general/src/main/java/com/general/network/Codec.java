@@ -0,0 +1,44 @@
+package com.general.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Формат, в котором сообщения {@link Sendable} передаются в телах кадров {@link Frame}.
+ * Формат выбирается для каждого соединения при рукопожатии (см. {@link Handshake}); до рукопожатия
+ * и с клиентами, которые его не выполняют, используется {@link Codecs#JAVA}.
+ * Реализации не хранят состояния и могут использоваться из нескольких потоков.
+ */
+public interface Codec {
+    /**
+     * Возвращает код формата, которым он обозначается при рукопожатии.
+     *
+     * @return код формата
+     */
+    int getId();
+
+    /**
+     * Возвращает имя формата для настроек и журнала.
+     *
+     * @return имя формата
+     */
+    String getName();
+
+    /**
+     * Записывает сообщение в поток.
+     *
+     * @param message сообщение
+     * @param out     поток, в который записывается тело кадра
+     * @throws IOException если сообщение не удалось записать, в том числе если тип его данных не поддерживается форматом
+     */
+    void encode(Sendable message, OutputStream out) throws IOException;
+
+    /**
+     * Читает сообщение из тела кадра.
+     *
+     * @param body тело кадра
+     * @return сообщение
+     * @throws IOException если тело не является сообщением в этом формате
+     */
+    Sendable decode(byte[] body) throws IOException;
+}
@@ -0,0 +1,71 @@
+package com.general.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Реестр форматов сообщений, доступных для согласования при рукопожатии.
+ */
+public final class Codecs {
+    /**
+     * Код стандартной сериализации Java.
+     */
+    public static final int JAVA_ID = 0;
+
+    /**
+     * Код формата JSON.
+     */
+    public static final int JSON_ID = 1;
+
+    /**
+     * Код компактного двоичного формата.
+     */
+    public static final int BINARY_ID = 2;
+
+    /**
+     * Стандартная сериализация Java.
+     */
+    public static final Codec JAVA = new JavaCodec();
+
+    /**
+     * Формат JSON.
+     */
+    public static final Codec JSON = new JsonCodec();
+
+    /**
+     * Компактный двоичный формат.
+     */
+    public static final Codec BINARY = new BinaryCodec();
+
+    private static final Codec[] ALL = {JAVA, JSON, BINARY};
+
+    private Codecs() {
+    }
+
+    /**
+     * Возвращает формат по коду.
+     *
+     * @param id код формата
+     * @return формат или null, если код неизвестен
+     */
+    public static Codec byId(int id) {
+        return id >= 0 && id < ALL.length ? ALL[id] : null;
+    }
+
+    /**
+     * Разбирает список имен форматов через запятую, например из системного свойства.
+     * Неизвестные имена пропускаются.
+     *
+     * @param names имена форматов через запятую
+     * @return коды форматов в порядке перечисления
+     */
+    public static int[] parse(String names) {
+        List<Integer> ids = new ArrayList<>();
+        for (String name : names.split(",")) {
+            for (Codec codec : ALL) {
+                if (codec.getName().equalsIgnoreCase(name.trim()) && !ids.contains(codec.getId())) ids.add(codec.getId());
+            }
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,98 @@
+package com.general.network;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Формат сжатого тела кадра: 4 байта исходной длины (big-endian), затем данные в формате zlib ({@link java.util.zip.Deflater}).
+ * Исходная длина ограничивает распаковку, но память под результат выделяется по мере распаковки,
+ * а не по объявленной длине: иначе короткое тело с большой объявленной длиной заставило бы получателя
+ * сразу выделить много памяти. Тела сжимаются только для соединений, согласовавших {@link Handshake#COMPRESSION}.
+ */
+public final class Compression {
+    /**
+     * Размер префикса с исходной длиной тела.
+     */
+    public static final int LENGTH_PREFIX_SIZE = Integer.BYTES;
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private Compression() {
+    }
+
+    /**
+     * Распаковывает сжатое тело кадра.
+     *
+     * @param body сжатое тело
+     * @return исходное тело
+     * @throws StreamCorruptedException если данные повреждены или исходная длина недопустима
+     */
+    public static byte[] inflate(byte[] body) throws StreamCorruptedException {
+        return inflate(body, Frame.MAX_BODY_SIZE);
+    }
+
+    /**
+     * Распаковывает сжатое тело кадра, исходная длина которого не должна превышать заданную.
+     *
+     * @param body      сжатое тело
+     * @param maxLength наибольшая допустимая исходная длина
+     * @return исходное тело
+     * @throws StreamCorruptedException если данные повреждены или исходная длина недопустима
+     */
+    public static byte[] inflate(byte[] body, int maxLength) throws StreamCorruptedException {
+        if (body.length < LENGTH_PREFIX_SIZE) {
+            throw new StreamCorruptedException("Сжатое тело кадра слишком короткое");
+        }
+        int length = ByteBuffer.wrap(body).getInt();
+        Frame.checkLength(length);
+        if (length > maxLength) {
+            throw new StreamCorruptedException("Исходная длина сжатого тела " + length + " превышает допустимую " + maxLength);
+        }
+
+        byte[] result = new byte[Math.min(length, INITIAL_BUFFER_SIZE)];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(body, LENGTH_PREFIX_SIZE, body.length - LENGTH_PREFIX_SIZE);
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                if (inflated == result.length) result = Arrays.copyOf(result, (int) Math.min(length, 2L * result.length));
+                int count = inflater.inflate(result, inflated, result.length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                inflated += count;
+            }
+            if (inflated != length || !inflater.finished()) {
+                throw new StreamCorruptedException("Сжатое тело кадра повреждено");
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new StreamCorruptedException("Сжатое тело кадра повреждено: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Возвращает тело кадра, при необходимости распаковав его.
+     *
+     * @param frame полученный кадр
+     * @return несжатое тело
+     * @throws StreamCorruptedException если сжатые данные повреждены
+     */
+    public static byte[] body(Frame frame) throws StreamCorruptedException {
+        return body(frame, Frame.MAX_BODY_SIZE);
+    }
+
+    /**
+     * Возвращает тело кадра, при необходимости распаковав его не больше чем до заданной длины.
+     *
+     * @param frame     полученный кадр
+     * @param maxLength наибольшая допустимая длина несжатого тела
+     * @return несжатое тело
+     * @throws StreamCorruptedException если сжатые данные повреждены или слишком велики после распаковки
+     */
+    public static byte[] body(Frame frame, int maxLength) throws StreamCorruptedException {
+        return frame.isCompressed() ? inflate(frame.getBody(), maxLength) : frame.getBody();
+    }
+}
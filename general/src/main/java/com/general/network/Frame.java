@@ -0,0 +1,126 @@
+package com.general.network;
+
+import lombok.Getter;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ * Класс {@code Frame} описывает кадр, которым клиент и сервер обмениваются по сети.
+ * Каждый кадр состоит из 8-байтового заголовка (big-endian) и тела — сериализованного объекта {@link Sendable}.
+ * Заголовок содержит длину тела и идентификатор запроса: длина позволяет получателю собирать сообщения,
+ * разбитые на несколько TCP-сегментов, и разделять несколько сообщений, пришедших за одно чтение, а идентификатор
+ * позволяет сопоставить ответ с запросом, когда по одному соединению выполняется сразу несколько запросов.
+ * Идентификатор хранится в заголовке, а не в теле, поэтому одно и то же тело можно отправить в ответ на разные запросы.
+ * Старший бит длины — признак {@link #COMPRESSED_FLAG}: тело сжато (см. {@link Compression}).
+ */
+@Getter
+public final class Frame {
+    /**
+     * Размер заголовка кадра в байтах: длина тела и идентификатор запроса.
+     */
+    public static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    /**
+     * Смещение идентификатора запроса в заголовке.
+     */
+    public static final int REQUEST_ID_OFFSET = Integer.BYTES;
+
+    /**
+     * Максимально допустимый размер тела кадра в байтах.
+     */
+    public static final int MAX_BODY_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Признак сжатого тела в поле длины заголовка.
+     */
+    public static final int COMPRESSED_FLAG = 0x8000_0000;
+
+    /**
+     * Идентификатор запроса; 0 — запрос без идентификатора.
+     */
+    private final int requestId;
+
+    /**
+     * Тело кадра.
+     */
+    private final byte[] body;
+
+    /**
+     * Сжато ли тело кадра.
+     */
+    private final boolean compressed;
+
+    /**
+     * Создает кадр с несжатым телом.
+     *
+     * @param requestId идентификатор запроса
+     * @param body      тело кадра
+     */
+    public Frame(int requestId, byte[] body) {
+        this(requestId, body, false);
+    }
+
+    /**
+     * Создает кадр.
+     *
+     * @param requestId  идентификатор запроса
+     * @param body       тело кадра
+     * @param compressed сжато ли тело
+     */
+    public Frame(int requestId, byte[] body, boolean compressed) {
+        this.requestId = requestId;
+        this.body = body;
+        this.compressed = compressed;
+    }
+
+    /**
+     * Упаковывает тело сообщения в кадр: заголовок с длиной и идентификатором запроса, затем само тело.
+     *
+     * @param requestId идентификатор запроса
+     * @param body      тело сообщения
+     * @return буфер с кадром, готовый к записи в канал
+     */
+    public static ByteBuffer wrap(int requestId, byte[] body) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + body.length);
+        frame.putInt(body.length);
+        frame.putInt(requestId);
+        frame.put(body);
+        return frame.flip();
+    }
+
+    /**
+     * Записывает заголовок в начало буфера, в котором после {@link #HEADER_SIZE} байтов уже лежит тело кадра.
+     *
+     * @param frame     буфер с кадром в режиме чтения
+     * @param requestId идентификатор запроса
+     */
+    public static void putHeader(ByteBuffer frame, int requestId) {
+        putHeader(frame, requestId, false);
+    }
+
+    /**
+     * Записывает заголовок в начало буфера, в котором после {@link #HEADER_SIZE} байтов уже лежит тело кадра.
+     *
+     * @param frame      буфер с кадром в режиме чтения
+     * @param requestId  идентификатор запроса
+     * @param compressed сжато ли тело
+     */
+    public static void putHeader(ByteBuffer frame, int requestId, boolean compressed) {
+        int length = frame.limit() - HEADER_SIZE;
+        frame.putInt(0, compressed ? length | COMPRESSED_FLAG : length);
+        frame.putInt(REQUEST_ID_OFFSET, requestId);
+    }
+
+    /**
+     * Проверяет длину тела, прочитанную из заголовка кадра.
+     *
+     * @param length длина тела из заголовка
+     * @throws StreamCorruptedException если длина отрицательна или превышает {@link #MAX_BODY_SIZE}
+     */
+    static void checkLength(int length) throws StreamCorruptedException {
+        if (length < 0 || length > MAX_BODY_SIZE) {
+            throw new StreamCorruptedException("Недопустимая длина кадра: " + length);
+        }
+    }
+}
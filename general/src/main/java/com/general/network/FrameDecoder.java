@@ -0,0 +1,197 @@
+package com.general.network;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Собирает кадры {@link Frame} из потока байтов, поступающих из неблокирующего канала.
+ * Экземпляр хранится на всё время жизни соединения: байты неполного кадра остаются в буфере
+ * накопления между пробуждениями селектора и дополняются при следующем чтении.
+ * Буфер накопления берется только на время, пока в нем есть данные; наследники могут переопределить
+ * {@link #allocateBuffer(int)} и {@link #releaseBuffer(ByteBuffer)}, чтобы брать буферы из пула.
+ * <p>
+ * Буфер расширяется не более чем вдвое за раз и только когда заполнен уже полученными байтами, поэтому
+ * длина из заголовка сама по себе не заставляет выделять память: ее объем пропорционален реально полученным данным.
+ */
+public class FrameDecoder {
+    private static final int INITIAL_CAPACITY = 8192;
+
+    /**
+     * Наибольшая допустимая длина тела кадра.
+     */
+    private final int maxBodySize;
+
+    /**
+     * Буфер накопления; между вызовами находится в режиме записи. Равен null, если данных нет.
+     */
+    private ByteBuffer buffer;
+    private boolean closed = false;
+
+    /**
+     * Создает декодер, принимающий кадры до {@link Frame#MAX_BODY_SIZE}.
+     */
+    public FrameDecoder() {
+        this(Frame.MAX_BODY_SIZE);
+    }
+
+    /**
+     * Создает декодер с собственным ограничением длины кадра.
+     *
+     * @param maxBodySize наибольшая допустимая длина тела кадра, не больше {@link Frame#MAX_BODY_SIZE}
+     */
+    public FrameDecoder(int maxBodySize) {
+        this.maxBodySize = Math.min(maxBodySize, Frame.MAX_BODY_SIZE);
+    }
+
+    /**
+     * Читает из канала все доступные байты, при необходимости расширяя буфер накопления.
+     * Заполненный буфер расширяется вдвое, но не больше размера кадра в его начале, и только после проверки
+     * длины из заголовка.
+     * Если в заполненном буфере уже лежит целый кадр, чтение прекращается до его извлечения.
+     *
+     * @param channel канал, из которого производится чтение
+     * @return количество прочитанных байтов или -1, если канал закрыт удаленной стороной
+     * @throws StreamCorruptedException если заголовок кадра содержит недопустимую длину
+     * @throws IOException              если произошла ошибка ввода-вывода
+     */
+    public synchronized int readFrom(ReadableByteChannel channel) throws IOException {
+        if (closed) throw new ClosedChannelException();
+        if (buffer == null) buffer = allocateBuffer(INITIAL_CAPACITY);
+
+        int total = 0;
+        int bytesRead = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                int frameSize = headFrameSize();
+                if (buffer.position() >= frameSize) break;
+                grow(Math.min(frameSize, buffer.capacity() * 2));
+            }
+            bytesRead = channel.read(buffer);
+            if (bytesRead <= 0) break;
+            total += bytesRead;
+        }
+        if (buffer.position() == 0) {
+            releaseBuffer(buffer);
+            buffer = null;
+        }
+        return (bytesRead == -1 && total == 0) ? -1 : total;
+    }
+
+    /**
+     * Добавляет в буфер накопления байты, уже прочитанные из канала, например асинхронным чтением.
+     *
+     * @param data буфер с прочитанными байтами в режиме чтения; читается до конца
+     * @throws ClosedChannelException   если декодер закрыт
+     * @throws StreamCorruptedException если заголовок кадра содержит недопустимую длину
+     */
+    public synchronized void append(ByteBuffer data) throws IOException {
+        if (closed) throw new ClosedChannelException();
+        if (buffer == null) buffer = allocateBuffer(INITIAL_CAPACITY);
+        if (buffer.remaining() < data.remaining()) {
+            // Сначала дописывается заголовок, чтобы проверить длину кадра до расширения буфера
+            int headerPart = Math.max(0, Math.min(Frame.HEADER_SIZE - buffer.position(), data.remaining()));
+            buffer.put(data.slice(data.position(), headerPart));
+            data.position(data.position() + headerPart);
+            headFrameSize();
+            grow(Math.max(buffer.capacity() * 2, buffer.position() + data.remaining()));
+        }
+        buffer.put(data);
+    }
+
+    /**
+     * Извлекает из буфера накопления очередной полный кадр.
+     *
+     * @return кадр или null, если полный кадр еще не получен
+     * @throws StreamCorruptedException если заголовок кадра содержит недопустимую длину
+     */
+    public synchronized Frame nextFrame() throws StreamCorruptedException {
+        if (buffer == null || buffer.position() < Frame.HEADER_SIZE) return null;
+
+        int header = buffer.getInt(0);
+        int length = header & ~Frame.COMPRESSED_FLAG;
+        int frameSize = headFrameSize();
+        if (buffer.position() < frameSize) return null;
+
+        int requestId = buffer.getInt(Frame.REQUEST_ID_OFFSET);
+        byte[] body = new byte[length];
+        buffer.flip();
+        buffer.position(Frame.HEADER_SIZE);
+        buffer.get(body);
+        buffer.compact();
+        if (buffer.position() == 0) {
+            releaseBuffer(buffer);
+            buffer = null;
+        }
+        return new Frame(requestId, body, (header & Frame.COMPRESSED_FLAG) != 0);
+    }
+
+    /**
+     * Возвращает количество байтов, накопленных в буфере и еще не извлеченных в виде кадров.
+     *
+     * @return количество накопленных байтов
+     */
+    public synchronized int buffered() {
+        return buffer == null ? 0 : buffer.position();
+    }
+
+    /**
+     * Освобождает буфер накопления. После вызова чтение из декодера невозможно.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (buffer != null) {
+            releaseBuffer(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Выделяет буфер накопления.
+     *
+     * @param capacity минимальная емкость буфера
+     * @return пустой буфер в режиме записи
+     */
+    protected ByteBuffer allocateBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Освобождает буфер накопления, который больше не используется декодером.
+     *
+     * @param buffer освобождаемый буфер
+     */
+    protected void releaseBuffer(ByteBuffer buffer) {
+    }
+
+    /**
+     * Возвращает размер кадра в начале буфера накопления, проверив длину тела из его заголовка.
+     *
+     * @return размер кадра вместе с заголовком или {@link Frame#HEADER_SIZE}, если заголовок еще не получен
+     * @throws StreamCorruptedException если заголовок кадра содержит недопустимую длину или длину больше допустимой
+     */
+    private int headFrameSize() throws StreamCorruptedException {
+        if (buffer.position() < Frame.HEADER_SIZE) return Frame.HEADER_SIZE;
+        int length = buffer.getInt(0) & ~Frame.COMPRESSED_FLAG;
+        Frame.checkLength(length);
+        if (length > maxBodySize) {
+            throw new StreamCorruptedException("Длина кадра " + length + " превышает допустимую " + maxBodySize);
+        }
+        return Frame.HEADER_SIZE + length;
+    }
+
+    /**
+     * Заменяет буфер накопления буфером большей емкости, сохраняя накопленные байты.
+     *
+     * @param capacity минимальная новая емкость
+     */
+    private void grow(int capacity) {
+        ByteBuffer grown = allocateBuffer(Math.max(capacity, buffer.capacity()));
+        buffer.flip();
+        grown.put(buffer);
+        releaseBuffer(buffer);
+        buffer = grown;
+    }
+}
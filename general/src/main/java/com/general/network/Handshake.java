@@ -0,0 +1,86 @@
+package com.general.network;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * Данные рукопожатия, которым клиент и сервер согласуют возможности протокола сразу после подключения.
+ * Клиент отправляет запрос {@link #COMMAND} с набором возможностей, которые он поддерживает,
+ * сервер отвечает пересечением этого набора со своим и с этого момента использует только его.
+ * Клиент, не выполнивший рукопожатие, получает ответы в базовом формате.
+ * <p>
+ * Вместе с возможностями согласуется формат сообщений {@link Codec}: клиент перечисляет коды форматов в порядке
+ * предпочтения, сервер отвечает выбранным форматом. Само рукопожатие всегда передается в текущем формате соединения,
+ * а новый формат действует начиная со следующего сообщения. Сервер или клиент, не знающий о форматах,
+ * не заполняет список, и соединение остается на {@link Codecs#JAVA}.
+ */
+@Getter
+public class Handshake implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Имя служебной команды рукопожатия.
+     */
+    public static final String COMMAND = "handshake";
+
+    /**
+     * Клиент умеет распаковывать сжатые тела кадров (см. {@link Compression}).
+     */
+    public static final int COMPRESSION = 1;
+
+    /**
+     * Клиент умеет принимать потоковые ответы частями {@link StreamChunk}.
+     */
+    public static final int STREAMING = 2;
+
+    /**
+     * Набор возможностей — битовая маска из констант этого класса.
+     */
+    private final int features;
+
+    /**
+     * Коды форматов сообщений: в запросе — поддерживаемые клиентом в порядке предпочтения,
+     * в ответе — один выбранный сервером. Может быть null.
+     */
+    private final int[] codecs;
+
+    /**
+     * Создает данные рукопожатия без согласования формата сообщений.
+     *
+     * @param features набор возможностей
+     */
+    public Handshake(int features) {
+        this(features, null);
+    }
+
+    /**
+     * Создает данные рукопожатия.
+     *
+     * @param features набор возможностей
+     * @param codecs   коды форматов сообщений
+     */
+    public Handshake(int features, int[] codecs) {
+        this.features = features;
+        this.codecs = codecs;
+    }
+
+    /**
+     * Возвращает выбранный формат сообщений — первый из перечисленных.
+     *
+     * @return код формата; {@link Codecs#JAVA_ID}, если форматы не перечислены
+     */
+    public int getCodec() {
+        return codecs == null || codecs.length == 0 ? Codecs.JAVA_ID : codecs[0];
+    }
+
+    /**
+     * Проверяет, входит ли возможность в набор.
+     *
+     * @param feature возможность
+     * @return true, если возможность поддерживается
+     */
+    public boolean supports(int feature) {
+        return (features & feature) != 0;
+    }
+}
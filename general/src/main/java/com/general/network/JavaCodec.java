@@ -0,0 +1,39 @@
+package com.general.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Стандартная сериализация Java — базовый формат протокола, который понимают все версии клиента и сервера.
+ */
+public class JavaCodec implements Codec {
+    @Override
+    public int getId() {
+        return Codecs.JAVA_ID;
+    }
+
+    @Override
+    public String getName() {
+        return "java";
+    }
+
+    @Override
+    public void encode(Sendable message, OutputStream out) throws IOException {
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(out);
+        objectOutputStream.writeObject(message);
+        objectOutputStream.flush();
+    }
+
+    @Override
+    public Sendable decode(byte[] body) throws IOException {
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(body))) {
+            return (Sendable) objectInputStream.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new StreamCorruptedException("Неизвестный тип сообщения: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.general.network;
+
+import com.general.io.DateAdapter;
+import com.general.models.Flat;
+import com.general.models.base.Element;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StreamCorruptedException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Формат JSON: сообщение записывается объектом с полями {@link Sendable}, тип сообщения и тип данных
+ * указываются явно. Удобен для отладки и для клиентов не на Java. Поддерживает те же типы данных,
+ * что и {@link BinaryCodec}.
+ */
+public class JsonCodec implements Codec {
+    // Пропущенное поле при чтении получило бы значение по умолчанию из конструктора модели, поэтому null записывается явно
+    private static final Gson gson = new GsonBuilder()
+            .serializeNulls()
+            .registerTypeAdapter(LocalDate.class, new DateAdapter())
+            .create();
+    private static final Type COUNTS_TYPE = new TypeToken<LinkedHashMap<String, Long>>() {
+    }.getType();
+
+    @Override
+    public int getId() {
+        return Codecs.JSON_ID;
+    }
+
+    @Override
+    public String getName() {
+        return "json";
+    }
+
+    @Override
+    public void encode(Sendable message, OutputStream out) throws IOException {
+        JsonObject json = new JsonObject();
+        json.addProperty("type", messageType(message));
+        json.addProperty("success", message.isSuccess());
+        if (message.getMessage() != null) json.addProperty("message", message.getMessage());
+        if (message.getLogin() != null) json.addProperty("login", message.getLogin());
+        if (message.getPassword() != null) json.addProperty("password", message.getPassword());
+        if (message.getUserId() != null) json.addProperty("userId", message.getUserId());
+        if (message instanceof ChangeEvent event) {
+            json.addProperty("operation", event.getOperation().name());
+            if (event.getId() != null) json.addProperty("id", event.getId());
+        }
+        if (message.getData() != null) {
+            json.addProperty("dataType", dataType(message.getData()));
+            json.add("data", gson.toJsonTree(message.getData()));
+        }
+
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        gson.toJson(json, writer);
+        writer.flush();
+    }
+
+    @Override
+    public Sendable decode(byte[] body) throws IOException {
+        try {
+            JsonObject json = JsonParser.parseString(new String(body, StandardCharsets.UTF_8)).getAsJsonObject();
+            boolean success = json.get("success").getAsBoolean();
+            String message = getString(json, "message");
+            Object data = json.has("data") ? data(getString(json, "dataType"), json.get("data")) : null;
+
+            Sendable result = switch (getString(json, "type")) {
+                case "request" -> new Request(success, message, data);
+                case "response" -> new Response(success, message, data);
+                case "chunk" -> new StreamChunk(message);
+                case "event" -> new ChangeEvent(ChangeEvent.Operation.valueOf(getString(json, "operation")),
+                        json.has("id") ? json.get("id").getAsLong() : null, (Element) data);
+                default -> throw new StreamCorruptedException("Неизвестный тип сообщения");
+            };
+            result.setLogin(getString(json, "login"));
+            result.setPassword(getString(json, "password"));
+            result.setUserId(json.has("userId") ? json.get("userId").getAsInt() : null);
+            return result;
+        } catch (JsonParseException | IllegalStateException | IllegalArgumentException
+                 | NullPointerException | ClassCastException e) {
+            throw new StreamCorruptedException("Поврежденное сообщение JSON: " + e.getMessage());
+        }
+    }
+
+    private static String messageType(Sendable message) throws IOException {
+        if (message instanceof Request) return "request";
+        if (message instanceof ChangeEvent) return "event";
+        if (message instanceof StreamChunk) return "chunk";
+        if (message instanceof Response) return "response";
+        throw new IOException("Тип сообщения не поддерживается: " + message.getClass().getName());
+    }
+
+    private static String dataType(Object data) throws IOException {
+        if (data instanceof String) return "string";
+        if (data instanceof Long) return "long";
+        if (data instanceof Integer) return "integer";
+        if (data instanceof String[]) return "strings";
+        if (data instanceof Flat) return "flat";
+        if (data instanceof Handshake) return "handshake";
+        if (data instanceof SessionToken) return "session";
+        if (data instanceof Map) return "counts";
+        throw new IOException("Тип данных не поддерживается: " + data.getClass().getName());
+    }
+
+    private static Object data(String type, JsonElement data) throws StreamCorruptedException {
+        if (type == null) throw new StreamCorruptedException("Не указан тип данных");
+        return switch (type) {
+            case "string" -> data.getAsString();
+            case "long" -> data.getAsLong();
+            case "integer" -> data.getAsInt();
+            case "strings" -> gson.fromJson(data, String[].class);
+            case "flat" -> gson.fromJson(data, Flat.class);
+            case "handshake" -> gson.fromJson(data, Handshake.class);
+            case "session" -> gson.fromJson(data, SessionToken.class);
+            case "counts" -> gson.fromJson(data, COUNTS_TYPE);
+            default -> throw new StreamCorruptedException("Неизвестный тип данных: " + type);
+        };
+    }
+
+    private static String getString(JsonObject json, String name) {
+        JsonElement element = json.get(name);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+}
@@ -7,7 +7,8 @@ import java.io.Serializable;
 
 /**
  * Класс {@code Sendable} представляет объект, который может быть отправлен по сети.
- * Он инкапсулирует информацию о статусе успешности, сообщении, данных и, по желанию, учетных данных пользователя.
+ * Он инкапсулирует информацию о статусе успешности, сообщении, данных и, по желанию, учетных данных пользователя,
+ * а также идентификатор запроса, по которому ответ сопоставляется с запросом.
  * Этот класс служит абстрактным базовым классом для конкретных типов объектов, которые могут быть отправлены.
  */
 @Getter
@@ -29,20 +30,26 @@ public abstract class Sendable implements Serializable {
     protected final Object data;
 
     /**
-     * Логин пользователя, связанный с запросом, если применимо.
+     * Логин пользователя; передается только в запросе входа {@link SessionToken#LOGIN_COMMAND}.
      */
     protected String login;
 
     /**
-     * Пароль пользователя, связанный с запросом, если применимо.
+     * Пароль пользователя; передается только в запросе входа {@link SessionToken#LOGIN_COMMAND}.
      */
     protected String password;
 
     /**
-     * Идентификатор пользователя, связанный с запросом, если применимо.
+     * Идентификатор пользователя, связанный с запросом. Клиент его не передает: сервер берет его из сессии соединения.
      */
     protected Integer userId;
 
+    /**
+     * Идентификатор запроса, уникальный в пределах соединения; ответ получает идентификатор своего запроса.
+     * Передается в заголовке кадра {@link Frame}, а не в теле, поэтому не сериализуется; 0 — без идентификатора.
+     */
+    protected transient int requestId;
+
     /**
      * Создает объект, который может быть отправлен с указанным статусом успешности, сообщением и данными.
      *
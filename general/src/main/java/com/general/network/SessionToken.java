@@ -0,0 +1,47 @@
+package com.general.network;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * Токен сессии, который сервер выдает после входа пользователя.
+ * Сессия привязывается к соединению, поэтому последующие запросы не содержат учетных данных. После переподключения
+ * клиент восстанавливает сессию, отправляя запрос {@link #LOGIN_COMMAND} с токеном вместо логина и пароля.
+ * Новый пользователь сначала регистрируется запросом {@link #REGISTER_COMMAND}, который тоже возвращает токен.
+ */
+@Getter
+public class SessionToken implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Имя служебной команды входа.
+     */
+    public static final String LOGIN_COMMAND = "login";
+
+    /**
+     * Имя служебной команды регистрации.
+     */
+    public static final String REGISTER_COMMAND = "register";
+
+    /**
+     * Случайный идентификатор сессии.
+     */
+    private final long token;
+
+    /**
+     * Идентификатор пользователя, которому принадлежит сессия.
+     */
+    private final int userId;
+
+    /**
+     * Создает токен сессии.
+     *
+     * @param token  идентификатор сессии
+     * @param userId идентификатор пользователя
+     */
+    public SessionToken(long token, int userId) {
+        this.token = token;
+        this.userId = userId;
+    }
+}
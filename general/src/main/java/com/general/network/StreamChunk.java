@@ -0,0 +1,19 @@
+package com.general.network;
+
+/**
+ * Часть потокового ответа: несколько строк результата, разделенных переводом строки.
+ * Части ответа на один запрос имеют его идентификатор и приходят по порядку; поток завершается
+ * обычным ответом {@link Response} с тем же идентификатором.
+ */
+public class StreamChunk extends Response {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Создает часть потокового ответа.
+     *
+     * @param rows строки результата
+     */
+    public StreamChunk(String rows) {
+        super(true, rows);
+    }
+}
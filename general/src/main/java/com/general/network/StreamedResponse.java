@@ -0,0 +1,76 @@
+package com.general.network;
+
+import lombok.Getter;
+
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Результат потоковой команды: ленивый поток строк и завершающий ответ.
+ * Сервер отправляет строки частями {@link StreamChunk}, не собирая весь результат в памяти,
+ * а затем — завершающий ответ как признак конца потока. Клиенту, не поддерживающему потоковые ответы,
+ * отправляется единый ответ, собранный {@link #toResponse()}.
+ */
+@Getter
+public class StreamedResponse {
+    /**
+     * Строки результата; формируются при чтении потока.
+     */
+    private final Stream<String> rows;
+
+    /**
+     * Ответ, завершающий поток.
+     */
+    private final Response end;
+
+    /**
+     * Создает потоковый результат.
+     *
+     * @param rows строки результата
+     * @param end  ответ, завершающий поток
+     */
+    public StreamedResponse(Stream<String> rows, Response end) {
+        this.rows = rows;
+        this.end = end;
+    }
+
+    /**
+     * Создает результат без строк, состоящий только из завершающего ответа.
+     *
+     * @param response ответ
+     * @return потоковый результат
+     */
+    public static StreamedResponse of(Response response) {
+        return new StreamedResponse(Stream.empty(), response);
+    }
+
+    /**
+     * Собирает все строки и завершающий ответ в единый ответ.
+     *
+     * @return единый ответ
+     */
+    public Response toResponse() {
+        try {
+            return join(rows.collect(Collectors.joining("\n")), end);
+        } catch (RuntimeException e) {
+            return new Response(false, "Ошибка формирования ответа: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Объединяет полученные строки потока с завершающим ответом: строки становятся данными ответа,
+     * а если у завершающего ответа нет сообщения — самим сообщением.
+     *
+     * @param rows строки потока, разделенные переводом строки
+     * @param end  ответ, завершивший поток
+     * @return единый ответ
+     */
+    public static Response join(String rows, Response end) {
+        if (rows.isEmpty()) return end;
+        Response response = end.getMessage() == null
+                ? new Response(end.isSuccess(), rows)
+                : new Response(end.isSuccess(), end.getMessage(), rows);
+        response.setRequestId(end.getRequestId());
+        return response;
+    }
+}
@@ -0,0 +1,195 @@
+package com.general.managers;
+
+import com.general.models.Coordinates;
+import com.general.models.Flat;
+import com.general.models.House;
+import com.general.models.View;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочная проверка блокировок {@link CollectionManager}: 64 потока одновременно добавляют, заменяют и удаляют
+ * элементы и читают коллекцию. Ни одно изменение не должно потеряться, индексы должны совпадать с коллекцией,
+ * а чтения не должны видеть {@link java.util.ConcurrentModificationException} и другие ошибки.
+ * Снимки {@link CollectionManager#snapshot()} читаются без блокировки и должны быть упорядочены и целостны,
+ * а массовое удаление должно появляться в них целиком.
+ */
+public class CollectionManagerConcurrencyTest extends TestCase {
+    private static final int THREADS = 64;
+    private static final int OPERATIONS = 1000;
+
+    /**
+     * Коллекция квартир в памяти, без загрузки и сохранения.
+     */
+    private static class TestCollectionManager extends CollectionManager<Flat> {
+        @Override
+        protected Collection<Flat> createCollection() {
+            return new TreeSet<>(nameOrder());
+        }
+
+        @Override
+        protected void loadCollection() {
+        }
+
+        @Override
+        public void saveCollection() {
+        }
+
+        @Override
+        protected Long getId(Flat element) {
+            return element.getId();
+        }
+    }
+
+    private static Flat flat(Random random) {
+        return new Flat(0, "flat" + random.nextInt(1000), new Coordinates(1L, 2f), 1 + random.nextInt(100),
+                1 + random.nextInt(5), 1 + random.nextInt(10), 5f, View.GOOD,
+                new House("house" + random.nextInt(20), 2000, 3L, 1));
+    }
+
+    public void testConcurrentCommandsLoseNoUpdates() throws InterruptedException {
+        TestCollectionManager manager = new TestCollectionManager();
+        AtomicLong added = new AtomicLong();
+        AtomicLong removed = new AtomicLong();
+        AtomicLong replaced = new AtomicLong();
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        int operation = random.nextInt(8);
+                        if (operation == 0) {
+                            Flat flat = flat(random);
+                            manager.write(() -> manager.addToCollection(flat));
+                            added.incrementAndGet();
+                        } else if (operation == 1) {
+                            long id = 1 + random.nextInt((int) Math.max(1, added.get()));
+                            boolean hit = manager.write(() -> {
+                                Flat existing = manager.getById(id);
+                                if (existing != null) manager.removeFromCollection(existing);
+                                return existing != null;
+                            });
+                            if (hit) removed.incrementAndGet();
+                        } else if (operation == 2) {
+                            long id = 1 + random.nextInt((int) Math.max(1, added.get()));
+                            Flat replacement = flat(random);
+                            boolean hit = manager.write(() -> {
+                                Flat existing = manager.getById(id);
+                                if (existing != null) manager.replaceInCollection(existing, replacement);
+                                return existing != null;
+                            });
+                            if (hit) replaced.incrementAndGet();
+                        } else if (operation == 3) {
+                            manager.readOptimistic(() -> manager.collectionSize() + manager.getVersion());
+                        } else if (operation == 4) {
+                            PersistentTreeSet<Flat> snapshot = manager.snapshot();
+                            Comparator<Flat> order = manager.nameOrder();
+                            Flat previous = null;
+                            int count = 0;
+                            for (Flat flat : snapshot) {
+                                if (previous != null) assertTrue(order.compare(previous, flat) < 0);
+                                previous = flat;
+                                count++;
+                            }
+                            assertEquals(snapshot.size(), count);
+                        } else {
+                            long sum = manager.read(() -> {
+                                long total = 0;
+                                for (Flat flat : manager.getCollection()) {
+                                    total += flat.getHeight();
+                                    assertSame(flat, manager.getById(flat.getId()));
+                                }
+                                Flat min = manager.getMin();
+                                if (min != null) assertTrue(manager.checkExist(min.getId()));
+                                return total;
+                            });
+                            assertTrue(sum >= 0);
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        start.countDown();
+        assertTrue("Потоки не завершились вовремя", done.await(2, TimeUnit.MINUTES));
+        if (!errors.isEmpty()) {
+            AssertionError failure = new AssertionError("Ошибок в потоках: " + errors.size());
+            failure.initCause(errors.peek());
+            throw failure;
+        }
+
+        assertEquals(added.get() + 1, manager.getNextId());
+        assertEquals(added.get() - removed.get(), manager.collectionSize());
+        assertEquals(added.get() + removed.get() + replaced.get(), manager.getVersion());
+        for (long id = 1; id <= added.get(); id++) {
+            Flat flat = manager.getById(id);
+            if (flat != null) assertEquals(Long.valueOf(id), flat.getId());
+        }
+        int indexed = 0;
+        for (Flat flat : manager.getCollection()) {
+            assertSame(flat, manager.getById(flat.getId()));
+            indexed++;
+        }
+        assertEquals(manager.collectionSize(), indexed);
+        assertEquals(new ArrayList<>(manager.getCollection()), new ArrayList<>(manager.snapshot()));
+    }
+
+    public void testRemoveIfPublishesOneSnapshot() throws InterruptedException {
+        TestCollectionManager manager = new TestCollectionManager();
+        Random random = new Random(25);
+        int elements = 2_000;
+        for (int i = 0; i < elements; i++) {
+            Flat flat = flat(random);
+            flat.setName("flat" + i);
+            flat.setUserId(i % 2 == 0 ? 1 : 2);
+            manager.addToCollection(flat);
+        }
+
+        Queue<Integer> partial = new ConcurrentLinkedQueue<>();
+        CountDownLatch reading = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            reading.countDown();
+            while (!Thread.currentThread().isInterrupted()) {
+                int size = manager.snapshot().size();
+                if (size != elements && size != elements / 2) partial.add(size);
+                if (size != elements) return;
+            }
+        });
+        reader.start();
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        long version = manager.getVersion();
+        int removed = manager.write(() -> manager.removeIf(flat -> flat.isOwnedBy(1)).size());
+        reader.join(10_000);
+        reader.interrupt();
+
+        assertEquals(elements / 2, removed);
+        assertTrue("Читатель видел снимки размера " + partial, partial.isEmpty());
+        assertEquals(elements / 2, manager.collectionSize());
+        assertEquals(version + removed, manager.getVersion());
+        for (Flat flat : manager.getCollection()) {
+            assertFalse(flat.isOwnedBy(1));
+            assertSame(flat, manager.getById(flat.getId()));
+        }
+        assertEquals(new ArrayList<>(manager.getCollection()), new ArrayList<>(manager.snapshot()));
+    }
+}
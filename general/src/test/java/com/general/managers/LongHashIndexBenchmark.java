@@ -0,0 +1,150 @@
+package com.general.managers;
+
+import com.general.models.Coordinates;
+import com.general.models.Flat;
+import com.general.models.House;
+import com.general.models.View;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Микробенчмарк поиска, удаления и замены элемента по id в коллекции из миллиона квартир: {@link LongHashIndex}
+ * против {@link HashMap} с упакованными ключами и против прежнего линейного поиска по {@link PriorityQueue}.
+ * <p>
+ * Это не тест и surefire его не запускает. Запуск из корня проекта:
+ * <pre>
+ * mvn -B -q install -DskipTests &amp;&amp; mvn -B -q -pl general test-compile
+ * java -Xmx2g -cp general/target/classes:general/target/test-classes com.general.managers.LongHashIndexBenchmark
+ * </pre>
+ * Размер коллекции задает свойство {@code benchmark.size}. Для каждого случая выводятся время одной операции
+ * в лучшем и в медианном замере после прогрева.
+ */
+public class LongHashIndexBenchmark {
+    private static final int SIZE = Integer.getInteger("benchmark.size", 1_000_000);
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    /**
+     * Операций в замере для хеш-таблиц и для линейного поиска, который на миллионе элементов в тысячи раз медленнее.
+     */
+    private static final int HASH_OPERATIONS = 1_000_000;
+    private static final int SCAN_OPERATIONS = 20;
+
+    /**
+     * Не дает JIT выбросить результаты поиска как неиспользуемые.
+     */
+    private static long sink;
+
+    public static void main(String[] args) {
+        Random random = new Random(19);
+        long[] ids = new long[SIZE];
+        Coordinates coordinates = new Coordinates(1L, 1f);
+        House house = new House("Дом", 1990, 4L, 10L);
+        List<Flat> flats = new ArrayList<>(SIZE);
+        LongHashIndex<Flat> index = new LongHashIndex<>();
+        Map<Long, Flat> map = new HashMap<>();
+        for (int i = 0; i < SIZE; i++) {
+            long id;
+            do {
+                id = random.nextLong() & Long.MAX_VALUE;
+            } while (index.containsKey(id));
+            ids[i] = id;
+            // Имена различаются: equals квартиры не учитывает id, а PriorityQueue.remove ищет по equals
+            Flat flat = new Flat(id, "Квартира " + i, coordinates, 40, 2, 3, 5.5f, View.GOOD, house);
+            flats.add(flat);
+            index.put(id, flat);
+            map.put(id, flat);
+        }
+        PriorityQueue<Flat> queue = new PriorityQueue<>(flats);
+
+        // Порядок запросов случаен и одинаков для всех случаев; половина промахов — отсутствующие id
+        int[] order = new int[HASH_OPERATIONS];
+        for (int i = 0; i < order.length; i++) order[i] = random.nextInt(SIZE);
+        IntToLongFunction hit = i -> ids[order[i]];
+        IntToLongFunction miss = i -> ids[order[i]] ^ Long.MIN_VALUE;
+
+        System.out.printf("Элементов: %d, JVM: %s %s%n", SIZE, System.getProperty("java.vm.name"),
+                System.getProperty("java.version"));
+
+        measure("getById: LongHashIndex", HASH_OPERATIONS, n -> {
+            long sum = 0;
+            for (int i = 0; i < n; i++) sum += index.get(hit.applyAsLong(i)).getArea();
+            return sum;
+        });
+        measure("getById: HashMap<Long, Flat>", HASH_OPERATIONS, n -> {
+            long sum = 0;
+            for (int i = 0; i < n; i++) sum += map.get(hit.applyAsLong(i)).getArea();
+            return sum;
+        });
+        measure("getById: линейный поиск", SCAN_OPERATIONS, n -> {
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                long id = hit.applyAsLong(i);
+                sum += queue.stream().filter(flat -> flat.getId() == id).findFirst().orElseThrow().getArea();
+            }
+            return sum;
+        });
+
+        measure("checkExist (промах): LongHashIndex", HASH_OPERATIONS, n -> {
+            long sum = 0;
+            for (int i = 0; i < n; i++) if (index.containsKey(miss.applyAsLong(i))) sum++;
+            return sum;
+        });
+        measure("checkExist (промах): линейный поиск", SCAN_OPERATIONS, n -> {
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                long id = miss.applyAsLong(i);
+                if (queue.stream().anyMatch(flat -> flat.getId() == id)) sum++;
+            }
+            return sum;
+        });
+
+        // Удаление с возвратом того же элемента, чтобы размер коллекции не менялся между замерами
+        measure("remove + put: LongHashIndex", HASH_OPERATIONS, n -> {
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                Flat flat = index.remove(hit.applyAsLong(i));
+                index.put(flat.getId(), flat);
+                sum += flat.getArea();
+            }
+            return sum;
+        });
+        measure("remove + add: поиск и PriorityQueue.remove", SCAN_OPERATIONS, n -> {
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                long id = hit.applyAsLong(i);
+                Flat flat = queue.stream().filter(candidate -> candidate.getId() == id).findFirst().orElseThrow();
+                queue.remove(flat);
+                queue.add(flat);
+                sum += flat.getArea();
+            }
+            return sum;
+        });
+        System.out.println(sink == 42 ? "" : "Готово");
+    }
+
+    /**
+     * Замер, выполняющий заданное число операций и возвращающий их сумму для {@link #sink}.
+     */
+    private interface Run {
+        long run(int operations);
+    }
+
+    private static void measure(String name, int operations, Run run) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) sink += run.run(operations);
+        double[] nanos = new double[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            sink += run.run(operations);
+            nanos[round] = (double) (System.nanoTime() - start) / operations;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-45s лучший %,14.1f нс/оп, медиана %,14.1f нс/оп%n", name, nanos[0], nanos[ROUNDS / 2]);
+    }
+}
@@ -0,0 +1,167 @@
+package com.general.managers;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Проверка {@link LongHashIndex} по эталонной {@link HashMap}: случайные вставки, поиски и удаления, ключи с общей
+ * начальной ячейкой, цепочки, переходящие через конец таблицы, и несколько расширений подряд.
+ */
+public class LongHashIndexTest extends TestCase {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Начальная ячейка ключа в таблице заданного размера; повторяет перемешивание {@link LongHashIndex}.
+     */
+    private static int home(long key, int capacity) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (capacity - 1);
+    }
+
+    /**
+     * Подбирает ключи, начальная ячейка которых в таблице начального размера равна заданной.
+     */
+    private static List<Long> keysWithHome(int slot, int count, long from) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = from; keys.size() < count; key++) {
+            if (home(key, INITIAL_CAPACITY) == slot) keys.add(key);
+        }
+        return keys;
+    }
+
+    private static void assertSame(Map<Long, String> expected, LongHashIndex<String> index, Iterable<Long> probes) {
+        assertEquals(expected.size(), index.size());
+        for (long key : probes) {
+            assertEquals("ключ " + key, expected.get(key), index.get(key));
+            assertEquals("ключ " + key, expected.containsKey(key), index.containsKey(key));
+        }
+    }
+
+    public void testRandomOperationsMatchHashMap() {
+        Random random = new Random(19);
+        LongHashIndex<String> index = new LongHashIndex<>();
+        Map<Long, String> expected = new HashMap<>();
+        long[] extremes = {0, -1, 1, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE};
+
+        for (int step = 0; step < 300_000; step++) {
+            // Небольшой диапазон ключей дает частые повторы, замены и удаления существующих ключей
+            long key = random.nextInt(20) == 0 ? extremes[random.nextInt(extremes.length)] : random.nextInt(2_000) - 1_000;
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                String value = "v" + step;
+                assertEquals(expected.put(key, value), index.put(key, value));
+            } else if (operation < 8) {
+                assertEquals(expected.remove(key), index.remove(key));
+            } else {
+                assertEquals(expected.get(key), index.get(key));
+            }
+            assertEquals(expected.size(), index.size());
+            if (step % 100_000 == 99_999) {
+                assertSame(expected, index, expected.keySet());
+                index.clear();
+                expected.clear();
+                assertEquals(0, index.size());
+            }
+        }
+        assertSame(expected, index, expected.keySet());
+    }
+
+    public void testCollidingKeys() {
+        Random random = new Random(19);
+        // Цепочка из ключей с одной начальной ячейкой и ключей соседних ячеек, которые в нее вклиниваются
+        List<Long> keys = new ArrayList<>(keysWithHome(3, 5, 0));
+        keys.addAll(keysWithHome(4, 2, 0));
+        keys.add(keysWithHome(5, 1, 0).get(0));
+        List<Long> probes = new ArrayList<>(keys);
+        probes.addAll(keysWithHome(3, 5, keys.get(keys.size() - 1) + 1));
+
+        for (int round = 0; round < 2_000; round++) {
+            LongHashIndex<String> index = new LongHashIndex<>();
+            Map<Long, String> expected = new HashMap<>();
+            Collections.shuffle(keys, random);
+            for (long key : keys) {
+                index.put(key, "v" + key);
+                expected.put(key, "v" + key);
+            }
+            assertSame(expected, index, probes);
+            Collections.shuffle(keys, random);
+            for (long key : keys) {
+                assertEquals(expected.remove(key), index.remove(key));
+                assertNull(index.remove(key));
+                assertSame(expected, index, probes);
+            }
+        }
+    }
+
+    public void testWrapAroundDeletes() {
+        Random random = new Random(19);
+        // Ключи последней ячейки продолжают цепочку с начала таблицы, где ее перемежают ключи ячеек 0 и 1
+        List<Long> keys = new ArrayList<>(keysWithHome(INITIAL_CAPACITY - 1, 4, 0));
+        keys.addAll(keysWithHome(INITIAL_CAPACITY - 2, 1, 0));
+        keys.addAll(keysWithHome(0, 2, 0));
+        keys.add(keysWithHome(1, 1, 0).get(0));
+
+        for (int round = 0; round < 2_000; round++) {
+            LongHashIndex<String> index = new LongHashIndex<>();
+            Map<Long, String> expected = new HashMap<>();
+            Collections.shuffle(keys, random);
+            for (long key : keys) {
+                index.put(key, "v" + key);
+                expected.put(key, "v" + key);
+            }
+            // Удаляем часть ключей и снова вставляем их в другом порядке, чтобы чаще сдвигать цепочку через край
+            Collections.shuffle(keys, random);
+            List<Long> removed = new ArrayList<>(keys.subList(0, 1 + random.nextInt(keys.size())));
+            for (long key : removed) {
+                assertEquals(expected.remove(key), index.remove(key));
+                assertSame(expected, index, keys);
+            }
+            Collections.shuffle(removed, random);
+            for (long key : removed) {
+                assertNull(index.put(key, "w" + key));
+                expected.put(key, "w" + key);
+                assertSame(expected, index, keys);
+            }
+        }
+    }
+
+    public void testSeveralResizes() {
+        Random random = new Random(19);
+        LongHashIndex<String> index = new LongHashIndex<>();
+        Map<Long, String> expected = new HashMap<>();
+        // 2^17 ключей — больше десятка расширений от начальных 16 ячеек
+        for (int i = 0; i < 1 << 17; i++) {
+            long key = i % 2 == 0 ? i : random.nextLong();
+            assertEquals(expected.put(key, "v" + i), index.put(key, "v" + i));
+            // Проверяем все ключи сразу после каждого расширения
+            if (Integer.bitCount(i) == 1 && i >= INITIAL_CAPACITY / 2) assertSame(expected, index, expected.keySet());
+        }
+        assertSame(expected, index, expected.keySet());
+
+        List<Long> keys = new ArrayList<>(expected.keySet());
+        Collections.shuffle(keys, random);
+        for (long key : keys.subList(0, keys.size() / 2)) {
+            assertEquals(expected.remove(key), index.remove(key));
+        }
+        assertSame(expected, index, keys);
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertNull(index.get(keys.get(0)));
+        assertNull(index.put(keys.get(0), "снова"));
+        assertEquals("снова", index.get(keys.get(0)));
+    }
+
+    public void testNullValueIsRejected() {
+        try {
+            new LongHashIndex<String>().put(1, null);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.general.network;
+
+import com.general.models.Coordinates;
+import com.general.models.Flat;
+import com.general.models.House;
+import com.general.models.View;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Проверка форматов {@link BinaryCodec} и {@link JsonCodec}: каждое поддерживаемое значение после кодирования
+ * и декодирования остается прежним, а обрезанные и случайные данные приводят к {@link IOException},
+ * а не к зависанию, другому исключению или выделению памяти по размеру из поврежденного заголовка.
+ */
+public class CodecRoundTripTest extends TestCase {
+    private static final Codec[] CODECS = {Codecs.BINARY, Codecs.JSON};
+
+    private static byte[] encode(Codec codec, Sendable message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encode(message, out);
+        return out.toByteArray();
+    }
+
+    private static Sendable roundTrip(Codec codec, Sendable message) throws IOException {
+        Sendable decoded = codec.decode(encode(codec, message));
+        assertEquals(codec.getName(), message.getClass(), decoded.getClass());
+        assertEquals(codec.getName(), message.isSuccess(), decoded.isSuccess());
+        assertEquals(codec.getName(), message.getMessage(), decoded.getMessage());
+        assertEquals(codec.getName(), message.getLogin(), decoded.getLogin());
+        assertEquals(codec.getName(), message.getPassword(), decoded.getPassword());
+        assertEquals(codec.getName(), message.getUserId(), decoded.getUserId());
+        return decoded;
+    }
+
+    private static Object roundTripData(Codec codec, Object data) throws IOException {
+        return roundTrip(codec, new Response(true, "ответ", data)).getData();
+    }
+
+    private static Flat fullFlat() {
+        Flat flat = new Flat(Long.MAX_VALUE, "Квартира «Ёлка» 🏠", new Coordinates(-1_000_000_000_000L, -2.5f), 40, 2, 3,
+                5.5f, View.GOOD, new House("Дом", 1990, 4L, Long.MIN_VALUE));
+        flat.setUserId(-7);
+        return flat;
+    }
+
+    public void testNullData() throws IOException {
+        for (Codec codec : CODECS) {
+            assertNull(codec.getName(), roundTripData(codec, null));
+            Response empty = new Response(false, null, null);
+            assertNull(codec.getName(), roundTrip(codec, empty).getMessage());
+        }
+    }
+
+    public void testLongEdges() throws IOException {
+        long[] values = {0, 1, -1, 63, -64, 64, -65, 127, 128, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                (long) Integer.MAX_VALUE + 1, (1L << 56) - 1, 1L << 56, -(1L << 62), Long.MAX_VALUE, Long.MIN_VALUE};
+        for (Codec codec : CODECS) {
+            for (long value : values) {
+                assertEquals(codec.getName() + " " + value, value, roundTripData(codec, value));
+            }
+            for (int value : new int[]{0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+                assertEquals(codec.getName() + " " + value, value, roundTripData(codec, value));
+            }
+        }
+    }
+
+    public void testNonAsciiStrings() throws IOException {
+        String[] values = {"", "ascii", "Привет, мир", "日本語", "emoji 🏠🚀", "\u0000\u007f\u0080\u07ff\u0800\uffff"};
+        for (Codec codec : CODECS) {
+            for (String value : values) {
+                assertEquals(codec.getName(), value, roundTripData(codec, value));
+                Request request = new Request(value, null);
+                request.setLogin(value);
+                request.setPassword(value);
+                request.setUserId(Integer.MIN_VALUE);
+                assertEquals(codec.getName(), value, ((Request) roundTrip(codec, request)).getCommand());
+            }
+        }
+    }
+
+    public void testStringArray() throws IOException {
+        String[] values = {"filter_starts_with_name", "Ёлка", "", "🏠"};
+        for (Codec codec : CODECS) {
+            assertTrue(codec.getName(), Arrays.equals(values, (String[]) roundTripData(codec, values)));
+            assertEquals(codec.getName(), 0, ((String[]) roundTripData(codec, new String[0])).length);
+        }
+    }
+
+    public void testFlat() throws IOException {
+        for (Codec codec : CODECS) {
+            Flat flat = fullFlat();
+            Flat decoded = (Flat) roundTripData(codec, flat);
+            assertEquals(codec.getName(), flat, decoded);
+            assertEquals(codec.getName(), flat.getId(), decoded.getId());
+        }
+    }
+
+    public void testFlatWithNullFields() throws IOException {
+        for (Codec codec : CODECS) {
+            Flat flat = new Flat();
+            flat.setCreationDate(null);
+            Flat decoded = (Flat) roundTripData(codec, flat);
+            assertEquals(codec.getName(), flat, decoded);
+            assertNull(codec.getName(), decoded.getId());
+
+            Flat partial = fullFlat();
+            partial.setArea(null);
+            partial.setKitchenArea(null);
+            partial.setView(null);
+            partial.setUserId(null);
+            partial.getHouse().setYear(null);
+            partial.getHouse().setNumberOfFlatsOnFloor(null);
+            assertEquals(codec.getName(), partial, roundTripData(codec, partial));
+        }
+    }
+
+    public void testHandshake() throws IOException {
+        for (Codec codec : CODECS) {
+            Handshake offer = new Handshake(Handshake.STREAMING | Handshake.COMPRESSION,
+                    new int[]{Codecs.BINARY_ID, Codecs.JSON_ID, Codecs.JAVA_ID});
+            Handshake decoded = (Handshake) roundTripData(codec, offer);
+            assertEquals(codec.getName(), offer.getFeatures(), decoded.getFeatures());
+            assertTrue(codec.getName(), Arrays.equals(offer.getCodecs(), decoded.getCodecs()));
+        }
+    }
+
+    public void testSessionToken() throws IOException {
+        for (Codec codec : CODECS) {
+            for (long token : new long[]{Long.MIN_VALUE, -1, 1, Long.MAX_VALUE}) {
+                SessionToken decoded = (SessionToken) roundTripData(codec, new SessionToken(token, 42));
+                assertEquals(codec.getName(), token, decoded.getToken());
+                assertEquals(codec.getName(), 42, decoded.getUserId());
+            }
+        }
+    }
+
+    public void testCounts() throws IOException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("Дом", 3L);
+        counts.put("", Long.MIN_VALUE);
+        counts.put("🏠", Long.MAX_VALUE);
+        for (Codec codec : CODECS) {
+            assertEquals(codec.getName(), counts, roundTripData(codec, counts));
+        }
+    }
+
+    public void testMessageKinds() throws IOException {
+        for (Codec codec : CODECS) {
+            assertEquals(codec.getName(), "строка", roundTrip(codec, new StreamChunk("строка")).getMessage());
+            ChangeEvent event = (ChangeEvent) roundTrip(codec, new ChangeEvent(ChangeEvent.Operation.REMOVE, -5L, fullFlat()));
+            assertEquals(codec.getName(), ChangeEvent.Operation.REMOVE, event.getOperation());
+            assertEquals(codec.getName(), Long.valueOf(-5), event.getId());
+            assertEquals(codec.getName(), fullFlat(), event.getData());
+        }
+    }
+
+    public void testBinarySize() throws IOException {
+        BinaryCodec binary = (BinaryCodec) Codecs.BINARY;
+        Sendable[] messages = {
+                new ChangeEvent(ChangeEvent.Operation.UPDATE, 1L, fullFlat()),
+                new Request("filter_starts_with_name", new String[]{"filter_starts_with_name", "Ёлка"}),
+                new Response(true, null, Map.of("Дом", Long.MIN_VALUE))
+        };
+        for (Sendable message : messages) {
+            int size = encode(binary, message).length;
+            assertEquals(message.toString(), binary.encodedSize(message), size);
+            // Без описаний классов сообщение в несколько раз короче стандартной сериализации
+            assertTrue(message.toString(), size * 4 < encode(Codecs.JAVA, message).length);
+        }
+    }
+
+    public void testUnsupportedDataIsRejected() {
+        for (Codec codec : CODECS) {
+            try {
+                encode(codec, new Response(true, null, new Object()));
+                fail(codec.getName());
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    public void testTruncatedInputThrows() throws IOException {
+        Sendable[] messages = {
+                new Request("add", fullFlat()),
+                new Response(true, "Группировка", Map.of("Дом", 1L)),
+                new Response(true, "Вход", new SessionToken(123, 4)),
+                new Request(Handshake.COMMAND, new Handshake(3, new int[]{2, 1})),
+                new ChangeEvent(ChangeEvent.Operation.ADD, 9L, fullFlat())
+        };
+        for (Codec codec : CODECS) {
+            for (Sendable message : messages) {
+                byte[] body = encode(codec, message);
+                for (int length = 0; length < body.length; length++) {
+                    assertDecodeFails(codec, Arrays.copyOf(body, length));
+                }
+            }
+        }
+    }
+
+    public void testHugeCountsAreRejected() {
+        // Ответ с массивом строк, длина которого в varint равна Integer.MAX_VALUE, а самих строк нет
+        byte[] strings = {1, 1, 0, 4, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertDecodeFails(Codecs.BINARY, strings);
+        // Строка, длина которой в varint больше оставшихся данных
+        byte[] string = {1, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertDecodeFails(Codecs.BINARY, string);
+        // Varint длиннее пяти байтов
+        byte[] varint = {1, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0};
+        assertDecodeFails(Codecs.BINARY, varint);
+        // Глубоко вложенный JSON
+        String nested = "[".repeat(100_000);
+        assertDecodeFails(Codecs.JSON, nested.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void testGarbageInput() {
+        Random random = new Random(15);
+        for (Codec codec : CODECS) {
+            for (int i = 0; i < 20_000; i++) {
+                byte[] body = new byte[random.nextInt(64)];
+                random.nextBytes(body);
+                try {
+                    codec.decode(body);
+                } catch (IOException expected) {
+                }
+            }
+        }
+    }
+
+    private static void assertDecodeFails(Codec codec, byte[] body) {
+        try {
+            Sendable decoded = codec.decode(body);
+            fail(codec.getName() + ": " + body.length + " байт декодированы как " + decoded);
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.general.network;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Проверка {@link Compression}: распаковка ограничена заданной длиной, а объявленная в префиксе длина,
+ * не совпадающая с данными, приводит к {@link StreamCorruptedException}.
+ */
+public class CompressionTest extends TestCase {
+
+    private static byte[] compress(byte[] data, int declaredLength) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ByteBuffer.allocate(Compression.LENGTH_PREFIX_SIZE).putInt(declaredLength).array());
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    public void testRoundTrip() throws Exception {
+        Random random = new Random(9);
+        for (int length : new int[]{1, 100, 8192, 8193, 100_000}) {
+            byte[] data = new byte[length];
+            // Половина байтов случайна, чтобы данные сжимались, но не в точку
+            for (int i = 0; i < length; i += 2) data[i] = (byte) random.nextInt();
+            assertTrue(Arrays.equals(data, Compression.inflate(compress(data, length), length)));
+        }
+    }
+
+    public void testLimitIsEnforced() throws Exception {
+        byte[] body = compress(new byte[1025], 1025);
+        assertEquals(1025, Compression.inflate(body).length);
+        try {
+            Compression.inflate(body, 1024);
+            fail();
+        } catch (StreamCorruptedException expected) {
+        }
+    }
+
+    public void testDeclaredLengthMustMatch() throws Exception {
+        byte[] data = new byte[1000];
+        for (int declared : new int[]{999, 1001, Frame.MAX_BODY_SIZE, -1}) {
+            try {
+                Compression.inflate(compress(data, declared));
+                fail("объявлено " + declared);
+            } catch (StreamCorruptedException expected) {
+            }
+        }
+    }
+}
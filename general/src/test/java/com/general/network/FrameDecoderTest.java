@@ -0,0 +1,114 @@
+package com.general.network;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Проверка {@link FrameDecoder}: память под буфер накопления выделяется по мере поступления байтов,
+ * а не по длине, объявленной в заголовке кадра.
+ */
+public class FrameDecoderTest extends TestCase {
+
+    /**
+     * Декодер, запоминающий наибольший выделенный буфер.
+     */
+    private static class MeasuringDecoder extends FrameDecoder {
+        int largest;
+
+        MeasuringDecoder(int maxBodySize) {
+            super(maxBodySize);
+        }
+
+        @Override
+        protected ByteBuffer allocateBuffer(int capacity) {
+            largest = Math.max(largest, capacity);
+            return super.allocateBuffer(capacity);
+        }
+    }
+
+    private static byte[] header(int length, int requestId) {
+        return ByteBuffer.allocate(Frame.HEADER_SIZE).putInt(length).putInt(requestId).array();
+    }
+
+    /**
+     * Канал, отдающий данные частями не больше заданного размера, как сокет.
+     */
+    private static ReadableByteChannel chunked(byte[] data, int chunk) {
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(data));
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer destination) throws IOException {
+                ByteBuffer limited = destination.slice();
+                limited.limit(Math.min(limited.remaining(), chunk));
+                int read = channel.read(limited);
+                if (read > 0) destination.position(destination.position() + read);
+                return read;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    public void testForgedLengthDoesNotAllocate() throws IOException {
+        MeasuringDecoder decoder = new MeasuringDecoder(Frame.MAX_BODY_SIZE);
+        byte[] data = Arrays.copyOf(header(Frame.MAX_BODY_SIZE, 1), Frame.HEADER_SIZE + 100);
+        decoder.readFrom(chunked(data, data.length));
+        assertNull(decoder.nextFrame());
+        decoder.append(ByteBuffer.wrap(new byte[100]));
+        assertNull(decoder.nextFrame());
+        assertEquals(data.length + 100, decoder.buffered());
+        assertTrue("выделено " + decoder.largest, decoder.largest <= 8192);
+    }
+
+    public void testLargeFrameGrowsWithData() throws IOException {
+        int length = 3 * 1024 * 1024 + 17;
+        byte[] body = new byte[length];
+        new Random(1).nextBytes(body);
+        byte[] data = new byte[Frame.HEADER_SIZE + length];
+        System.arraycopy(header(length, 7), 0, data, 0, Frame.HEADER_SIZE);
+        System.arraycopy(body, 0, data, Frame.HEADER_SIZE, length);
+
+        MeasuringDecoder decoder = new MeasuringDecoder(Frame.MAX_BODY_SIZE);
+        // Половина кадра: буфер не больше чем вдвое превышает полученные данные
+        decoder.readFrom(chunked(Arrays.copyOf(data, data.length / 2), 64 * 1024));
+        assertEquals(data.length / 2, decoder.buffered());
+        assertTrue("выделено " + decoder.largest, decoder.largest <= 2 * decoder.buffered());
+
+        decoder.readFrom(chunked(Arrays.copyOfRange(data, decoder.buffered(), data.length), 64 * 1024));
+        Frame frame = decoder.nextFrame();
+        assertNotNull(frame);
+        assertEquals(7, frame.getRequestId());
+        assertTrue(Arrays.equals(body, frame.getBody()));
+        assertEquals(0, decoder.buffered());
+        assertTrue("выделено " + decoder.largest, decoder.largest <= data.length);
+    }
+
+    public void testFrameLimit() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(1024);
+        decoder.append(ByteBuffer.wrap(header(1024, 1)));
+        assertNull(decoder.nextFrame());
+
+        FrameDecoder limited = new FrameDecoder(1024);
+        try {
+            limited.append(ByteBuffer.wrap(header(1025, 1)));
+            limited.nextFrame();
+            fail();
+        } catch (StreamCorruptedException expected) {
+        }
+    }
+}
@@ -29,6 +29,7 @@ public class Add<T extends Element & Comparable<T>> extends Command {
         try {
             if (request.getData() == null) throw new WrongAmountOfElementsException();
             T element = (T) request.getData();
+            element.setUserId(request.getUserId());
             Long newId = collectionManager.addToCollection(element);
 
             return new Response(true, "Элемент успешно добавлен!", newId);
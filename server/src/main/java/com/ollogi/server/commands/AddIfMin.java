@@ -7,8 +7,6 @@ import com.general.models.base.Element;
 import com.general.network.Request;
 import com.general.network.Response;
 
-import java.util.Optional;
-
 /**
  * Команда 'add_if_min'. Добавляет новый элемент в коллекцию, если его значение меньше минимального.
  */
@@ -29,11 +27,11 @@ public class AddIfMin<T extends Element & Comparable<T>> extends Command {
         try {
             if (request.getData() == null) throw new WrongAmountOfElementsException();
             T element = (T) request.getData();
+            element.setUserId(request.getUserId());
 
-            Optional<T> minValue = minValue();
-            if (minValue.isPresent() && element.compareTo(minValue.get()) < 0) {
+            T minValue = collectionManager.getMin();
+            if (minValue != null && element.compareTo(minValue) < 0) {
                 Long newId = collectionManager.addToCollection(element);
-                collectionManager.sortCollection();
                 return new Response(true, "Квартира успешно добавлена!", newId);
             } else {
                 return new Response(false, "Квартира не добавлена, значение не минимальное");
@@ -45,14 +43,4 @@ public class AddIfMin<T extends Element & Comparable<T>> extends Command {
             return new Response(false, unknownException.getMessage());
         }
     }
-
-    private Optional<T> minValue() {
-        if (collectionManager.getCollection() == null || collectionManager.getCollection().isEmpty()) {
-            return Optional.empty();
-        }
-
-        // Получаем минимальный объект T из коллекции, используя сортировку класса T
-        return collectionManager.getCollection().stream()
-                .min(T::compareTo);
-    }
 }
@@ -3,16 +3,19 @@ package com.ollogi.server.commands;
 import com.general.command.Command;
 import com.general.exceptions.WrongAmountOfElementsException;
 import com.general.managers.CollectionManager;
+import com.general.models.base.Element;
 import com.general.network.Request;
 import com.general.network.Response;
 
+import java.util.List;
+
 /**
- * Команда 'clear'. Очищает коллекцию.
+ * Команда 'clear'. Очищает коллекцию: удаляет элементы без владельца и элементы пользователя.
  */
-public class Clear extends Command {
-    private final CollectionManager<?> collectionManager;
+public class Clear<T extends Element & Comparable<T>> extends Command {
+    private final CollectionManager<T> collectionManager;
 
-    public Clear(CollectionManager<?> collectionManager) {
+    public Clear(CollectionManager<T> collectionManager) {
         super("clear", "очистить коллекцию");
         this.collectionManager = collectionManager;
     }
@@ -26,8 +29,12 @@ public class Clear extends Command {
         try {
             if (request.getData() != null) throw new WrongAmountOfElementsException();
 
-            collectionManager.clearCollection();
-            return new Response(true, "Коллекция очищена!");
+            if (collectionManager.getCollection().stream().allMatch(element -> element.isOwnedBy(request.getUserId()))) {
+                collectionManager.clearCollection();
+                return new Response(true, "Коллекция очищена!");
+            }
+            List<T> owned = collectionManager.removeIf(element -> element.isOwnedBy(request.getUserId()));
+            return new Response(true, "Удалено " + owned.size() + " элементов; элементы других пользователей сохранены.");
 
         } catch (WrongAmountOfElementsException exception) {
             return new Response(false, "Неправильное количество аргументов! Правильное использование: '" + getName() + "'");
@@ -1,25 +1,31 @@
 package com.ollogi.server.commands;
 
 import com.general.command.Command;
+import com.general.command.ReadOnly;
+import com.general.command.Streamable;
 import com.general.exceptions.WrongAmountOfElementsException;
-import com.general.io.Console;
-import com.general.managers.CollectionManager;
 import com.general.models.Flat;
 import com.general.network.Request;
 import com.general.network.Response;
+import com.general.network.StreamedResponse;
+import com.ollogi.server.managers.FlatCollectionManager;
 
-import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Команда 'filter_starts_with_name'. Выводит элементы, значение поля name которых начинается с заданной подстроки.
+ * Элементы выбираются диапазоном из упорядоченной по именам коллекции {@link FlatCollectionManager}
+ * за O(log n + k). Количество выводимых элементов можно ограничить отдельным аргументом, который клиент
+ * передает по флагу {@code --limit N}; подстрока при этом используется как есть.
+ * Найденные элементы преобразуются в строки лениво, по мере отправки клиенту.
  */
-public class FilterStartsWithName extends Command {
-    private final CollectionManager<Flat> collectionManager;
+public class FilterStartsWithName extends Command implements Streamable, ReadOnly {
+    private static final int DEFAULT_LIMIT = Integer.MAX_VALUE - 1;
 
-    public FilterStartsWithName(CollectionManager<Flat> collectionManager) {
-        super("filter_starts_with_name name", "вывести элементы, значение поля name которых начинается с заданной подстроки");
+    private final FlatCollectionManager collectionManager;
+
+    public FilterStartsWithName(FlatCollectionManager collectionManager) {
+        super("filter_starts_with_name [--limit N] name", "вывести элементы, значение поля name которых начинается с заданной подстроки");
         this.collectionManager = collectionManager;
     }
 
@@ -30,38 +36,47 @@ public class FilterStartsWithName extends Command {
      */
     @Override
     public Response execute(Request request) {
+        return stream(request).toResponse();
+    }
+
+    /**
+     * Подготавливает потоковый вывод найденных элементов
+     *
+     * @return Строки с найденными элементами и завершающий ответ.
+     */
+    @Override
+    public StreamedResponse stream(Request request) {
         try {
             if (request.getData() == null || !(request.getData() instanceof String[] args)) {
                 throw new WrongAmountOfElementsException();
             }
 
             String nameSubstring = args[1];
-            if (nameSubstring.isEmpty()) {
+            int limit = DEFAULT_LIMIT;
+            if (args.length > 2) {
+                if (args[2] == null || !args[2].matches("\\d{1,9}")) throw new WrongAmountOfElementsException();
+                limit = Integer.parseInt(args[2]);
+            }
+            if (nameSubstring.isEmpty() || limit <= 0) {
                 throw new WrongAmountOfElementsException();
             }
 
-            List<Flat> flats = filterByNameStart(nameSubstring);
-            StringBuilder result = new StringBuilder();
-
-            for (Flat element : flats) {
-                result.append(element.toString()).append("\n");
-            }
+            // Берем на один элемент больше, чтобы понять, были ли отброшены лишние
+            List<Flat> flats = collectionManager.findByNamePrefix(nameSubstring, limit + 1);
+            boolean truncated = flats.size() > limit;
+            if (truncated) flats = flats.subList(0, limit);
 
             if (flats.isEmpty()) {
-                return new Response(false, "Элементов, чьи имена начинаются с '" + nameSubstring + "' не обнаружено.");
+                return StreamedResponse.of(new Response(false, "Элементов, чьи имена начинаются с '" + nameSubstring + "' не обнаружено."));
+            } else if (truncated) {
+                return new StreamedResponse(flats.stream().map(Flat::toString), new Response(true,
+                        "Показаны первые " + limit + " элементов, чьи имена начинаются с '" + nameSubstring + "'."));
             } else {
-                return new Response(true,
-                        "Элементов, чьи имена начинаются с '" + nameSubstring + "' обнаружено " + flats.size() + " шт.",
-                        result.toString().trim());
+                return new StreamedResponse(flats.stream().map(Flat::toString), new Response(true,
+                        "Элементов, чьи имена начинаются с '" + nameSubstring + "' обнаружено " + flats.size() + " шт."));
             }
         } catch (WrongAmountOfElementsException exception) {
-            return new Response(false, "Неправильное количество аргументов! Правильное использование: '" + getName() + "'");
+            return StreamedResponse.of(new Response(false, "Неправильное количество аргументов! Правильное использование: '" + getName() + "'"));
         }
     }
-
-    private List<Flat> filterByNameStart(String nameSubstring) {
-        return collectionManager.getCollection().stream()
-                .filter(flat -> flat.getName() != null && flat.getName().startsWith(nameSubstring))
-                .collect(Collectors.toList());
-    }
 }
@@ -1,21 +1,21 @@
 package com.ollogi.server.commands;
 
+import com.general.command.Cacheable;
 import com.general.command.Command;
-import com.general.managers.CollectionManager;
-import com.general.models.Flat;
 import com.general.network.Request;
 import com.general.network.Response;
+import com.ollogi.server.managers.FlatCollectionManager;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Команда 'group_counting_by_house'. Группирует элементы коллекции по значению поля house и выводит количество элементов в каждой группе.
+ * Количества берутся из индекса домов {@link FlatCollectionManager}, без обхода коллекции.
  */
-public class GroupCountingByHouse extends Command {
-    private final CollectionManager<Flat> collectionManager;
+public class GroupCountingByHouse extends Command implements Cacheable {
+    private final FlatCollectionManager collectionManager;
 
-    public GroupCountingByHouse(CollectionManager<Flat> collectionManager) {
+    public GroupCountingByHouse(FlatCollectionManager collectionManager) {
         super("group_counting_by_house", "сгруппировать элементы коллекции по значению поля house, вывести количество элементов в каждой группе");
         this.collectionManager = collectionManager;
     }
@@ -27,7 +27,7 @@ public class GroupCountingByHouse extends Command {
      */
     @Override
     public Response execute(Request request) {
-        Map<String, Long> houseCountMap = groupByHouse();
+        Map<String, Long> houseCountMap = collectionManager.countByHouse();
 
         if (houseCountMap.isEmpty()) {
             return new Response(false, "Коллекция пуста.");
@@ -36,12 +36,8 @@ public class GroupCountingByHouse extends Command {
         }
     }
 
-    private Map<String, Long> groupByHouse() {
-        Map<String, Long> houseCountMap = new HashMap<>();
-        collectionManager.getCollection().stream()
-                .map(Flat::getHouse)
-                .filter(house -> house != null)
-                .forEach(house -> houseCountMap.put(house.getName(), houseCountMap.getOrDefault(house.getName(), 0L) + 1));
-        return houseCountMap;
+    @Override
+    public long version() {
+        return collectionManager.getVersion();
     }
 }
@@ -1,5 +1,6 @@
 package com.ollogi.server.commands;
 
+import com.general.command.Cacheable;
 import com.general.command.Command;
 import com.general.managers.CommandManager;
 import com.general.network.Request;
@@ -8,7 +9,7 @@ import com.general.network.Response;
 /**
  * Команда 'help'. Выводит справку по доступным командам.
  */
-public class Help extends Command {
+public class Help extends Command implements Cacheable {
     private final CommandManager commandManager;
 
     public Help(CommandManager commandManager) {
@@ -28,4 +29,12 @@ public class Help extends Command {
 
         return new Response(true, commandManager.toString());
     }
+
+    /**
+     * Набор команд не меняется после запуска сервера, поэтому справка всегда одна и та же.
+     */
+    @Override
+    public long version() {
+        return 0;
+    }
 }
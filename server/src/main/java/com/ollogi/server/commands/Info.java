@@ -1,5 +1,6 @@
 package com.ollogi.server.commands;
 
+import com.general.command.Cacheable;
 import com.general.command.Command;
 import com.general.managers.CollectionManager;
 import com.general.network.Request;
@@ -10,7 +11,7 @@ import java.time.LocalDateTime;
 /**
  * Команда 'info'. Выводит информацию о коллекции.
  */
-public class Info extends Command {
+public class Info extends Command implements Cacheable {
     private final CollectionManager<?> collectionManager;
 
     public Info(CollectionManager<?> collectionManager) {
@@ -50,4 +51,14 @@ public class Info extends Command {
 
         return new Response(true, infoMessage);
     }
+
+    @Override
+    public long version() {
+        return collectionManager.getVersion();
+    }
+
+    @Override
+    public boolean optimistic() {
+        return true;
+    }
 }
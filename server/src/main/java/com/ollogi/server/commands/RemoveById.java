@@ -9,8 +9,6 @@ import com.general.models.base.Element;
 import com.general.network.Request;
 import com.general.network.Response;
 
-import java.util.Optional;
-
 /**
  * Команда 'remove_by_id'. Удаляет элемент из коллекции.
  */
@@ -39,17 +37,18 @@ public class RemoveById<T extends Element & Comparable<T>> extends Command {
                 throw new CollectionIsEmptyException();
             }
 
-            // Ищем элемент по ID с использованием Stream API
-            Optional<T> elementToRemove = collectionManager.getCollection().stream()
-                    .filter(element -> element.getId().equals(id))
-                    .findFirst();
+            // Ищем элемент по индексу ID
+            T elementToRemove = collectionManager.getById(id);
 
-            if (elementToRemove.isEmpty()) {
+            if (elementToRemove == null) {
                 throw new NotFoundException();
             }
+            if (!elementToRemove.isOwnedBy(request.getUserId())) {
+                return new Response(false, "Элемент принадлежит другому пользователю!");
+            }
 
             // Удаляем элемент из коллекции
-            collectionManager.removeFromCollection(elementToRemove.get());
+            collectionManager.removeFromCollection(elementToRemove);
             return new Response(true, "Элемент успешно удален.");
 
 
@@ -7,9 +7,6 @@ import com.general.models.base.Element;
 import com.general.network.Request;
 import com.general.network.Response;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 /**
  * Команда 'remove_greater {element}'. Удаляет из коллекции все элементы, превышающие заданный.
  */
@@ -33,7 +30,7 @@ public class RemoveGreater<T extends Element & Comparable<T>> extends Command {
             @SuppressWarnings("unchecked")
             T element = (T) request.getData();
 
-            int removedElementsCount = removeGreater(element);
+            int removedElementsCount = removeGreater(element, request.getUserId());
             return new Response(true, "Удалено " + removedElementsCount + " элементов, превышающих заданный.");
 
         } catch (WrongAmountOfElementsException exception) {
@@ -43,22 +40,8 @@ public class RemoveGreater<T extends Element & Comparable<T>> extends Command {
         }
     }
 
-    private int removeGreater(T element) {
-        var collection = collectionManager.getCollection();
-        collectionManager.sortCollection();
-
-        // Проверка на пустоту коллекции
-        if (collection == null || collection.isEmpty()) {
-            return 0;
-        }
-
-        // Использование Stream API для фильтрации и удаления элементов
-        List<T> elementsToRemove = collection.stream()
-                .filter(e -> e.compareTo(element) > 0)
-                .collect(Collectors.toList());
-
-        elementsToRemove.forEach(collectionManager::removeFromCollection);
-
-        return elementsToRemove.size();
+    private int removeGreater(T element, Integer userId) {
+        // Обходятся только элементы нужного края индекса естественного порядка
+        return collectionManager.removeGreater(element, e -> e.isOwnedBy(userId)).size();
     }
 }
@@ -7,9 +7,6 @@ import com.general.models.base.Element;
 import com.general.network.Request;
 import com.general.network.Response;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 /**
  * Команда 'remove_lower {element}'. Удаляет из коллекции все элементы, меньшие, чем заданный.
  */
@@ -33,7 +30,7 @@ public class RemoveLower<T extends Element & Comparable<T>> extends Command {
             @SuppressWarnings("unchecked")
             T element = (T) request.getData();
 
-            int removedElementsCount = removeLower(element);
+            int removedElementsCount = removeLower(element, request.getUserId());
             return new Response(true, "Удалено " + removedElementsCount + " элементов, меньших, чем заданный.");
 
         } catch (WrongAmountOfElementsException exception) {
@@ -43,22 +40,8 @@ public class RemoveLower<T extends Element & Comparable<T>> extends Command {
         }
     }
 
-    private int removeLower(T element) {
-        var collection = collectionManager.getCollection();
-        collectionManager.sortCollection();
-
-        // Проверка на null и пустоту коллекции
-        if (collection == null || collection.isEmpty()) {
-            return 0;
-        }
-
-        // Использование Stream API для фильтрации и удаления элементов
-        List<T> elementsToRemove = collection.stream()
-                .filter(e -> e.compareTo(element) < 0)
-                .collect(Collectors.toList());
-
-        elementsToRemove.forEach(collectionManager::removeFromCollection);
-
-        return elementsToRemove.size();
+    private int removeLower(T element, Integer userId) {
+        // Обходятся только элементы нужного края индекса естественного порядка
+        return collectionManager.removeLower(element, e -> e.isOwnedBy(userId)).size();
     }
 }
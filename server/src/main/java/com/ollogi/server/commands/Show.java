@@ -1,22 +1,29 @@
 package com.ollogi.server.commands;
 
+import com.general.command.Cacheable;
 import com.general.command.Command;
+import com.general.command.Streamable;
 import com.general.exceptions.WrongAmountOfElementsException;
 import com.general.managers.CollectionManager;
+import com.general.managers.PersistentTreeSet;
 import com.general.models.base.Element;
 import com.general.network.Request;
 import com.general.network.Response;
+import com.general.network.StreamedResponse;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.Iterator;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Команда 'show'. Выводит все элементы коллекции.
+ * Таблица формируется в два прохода: первый вычисляет ширину колонок, второй лениво форматирует строки
+ * по мере отправки, поэтому таблица целиком в памяти не собирается. Оба прохода идут по одному неизменяемому
+ * снимку {@link CollectionManager#snapshot()} без блокировок, поэтому вывод согласован, а изменения коллекции
+ * во время долгой отправки не ждут его окончания.
  */
-public class Show<T extends Element & Comparable<T>> extends Command {
+public class Show<T extends Element & Comparable<T>> extends Command implements Streamable, Cacheable {
     private final CollectionManager<T> collectionManager;
 
     public Show(CollectionManager<T> collectionManager) {
@@ -25,44 +32,51 @@ public class Show<T extends Element & Comparable<T>> extends Command {
     }
 
     /**
-     * Выполняет команду
+     * Выполняет команду. Клиенту без потоковых ответов таблица, как и прежде, отправляется
+     * целиком в сообщении ответа.
      *
      * @return Response с результатом выполнения команды.
      */
     @Override
     public Response execute(Request request) {
+        StreamedResponse streamed = stream(request);
+        try {
+            String table = streamed.getRows().collect(Collectors.joining("\n"));
+            return table.isEmpty() ? streamed.getEnd() : new Response(true, table.trim());
+        } catch (IllegalStateException e) {
+            return new Response(false, "Ошибка доступа к полям объектов.");
+        }
+    }
+
+    /**
+     * Подготавливает потоковый вывод таблицы
+     *
+     * @return Строки таблицы и завершающий ответ.
+     */
+    @Override
+    public StreamedResponse stream(Request request) {
         try {
             if (request.getData() != null) {
                 throw new WrongAmountOfElementsException();
             }
 
-            if (collectionManager.getCollection().isEmpty()) {
-                return new Response(true, "Коллекция пуста.");
+            PersistentTreeSet<T> collection = collectionManager.snapshot();
+            if (collection.isEmpty()) {
+                return StreamedResponse.of(new Response(true, "Коллекция пуста."));
             }
 
-            StringBuilder result = new StringBuilder();
-            List<T> collection = new ArrayList<>(collectionManager.getCollection());
-            if (!collection.isEmpty()) {
-                T firstElement = collection.get(0);
-                String[] headers = getFieldNames(firstElement);
-                int[] columnWidths = getColumnWidths(headers, collection);
-
-                result.append(formatRow(headers, columnWidths)).append("\n");
-                result.append(formatRow(getSeparator(columnWidths), columnWidths)).append("\n");
+            String[] headers = getFieldNames(collection.first());
+            int[] columnWidths = getColumnWidths(headers, collection);
 
-                Iterator<T> iterator = collection.iterator();
-                while (iterator.hasNext()) {
-                    T element = iterator.next();
-                    result.append(formatRow(getFieldValues(element), columnWidths)).append("\n");
-                }
-            }
-
-            return new Response(true, result.toString().trim());
+            Stream<String> rows = Stream.concat(
+                    Stream.of(formatRow(headers, columnWidths), formatRow(getSeparator(columnWidths), columnWidths)),
+                    collection.stream().map(element -> formatRow(getFieldValuesUnchecked(element), columnWidths)));
+            return new StreamedResponse(rows, new Response(true, "Элементов в коллекции: " + collection.size()));
 
         } catch (WrongAmountOfElementsException exception) {
-            return new Response(false, "Неправильное количество аргументов! Правильное использование: '" + getName() + "'");
+            return StreamedResponse.of(new Response(false, "Неправильное количество аргументов! Правильное использование: '" + getName() + "'"));
         } catch (IllegalAccessException e) {
-            return new Response(false, "Ошибка доступа к полям объектов.");
+            return StreamedResponse.of(new Response(false, "Ошибка доступа к полям объектов."));
         }
     }
 
@@ -100,6 +114,21 @@ public class Show<T extends Element & Comparable<T>> extends Command {
         return fieldValues;
     }
 
+    /**
+     * Возвращает значения полей объекта при ленивом форматировании строк
+     *
+     * @param element объект
+     * @return массив значений полей
+     * @throws IllegalStateException если доступ к полям невозможен
+     */
+    private String[] getFieldValuesUnchecked(T element) {
+        try {
+            return getFieldValues(element);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Ошибка доступа к полям объектов.", e);
+        }
+    }
+
     /**
      * Определяет ширину каждой колонки для форматирования таблицы
      *
@@ -108,7 +137,7 @@ public class Show<T extends Element & Comparable<T>> extends Command {
      * @return массив с ширинами колонок
      * @throws IllegalAccessException если доступ к полям невозможен
      */
-    private int[] getColumnWidths(String[] headers, List<T> collection) throws IllegalAccessException {
+    private int[] getColumnWidths(String[] headers, Iterable<T> collection) throws IllegalAccessException {
         int[] widths = new int[headers.length];
         for (int i = 0; i < headers.length; i++) {
             widths[i] = headers[i].length();
@@ -170,4 +199,14 @@ public class Show<T extends Element & Comparable<T>> extends Command {
             return "unknown";
         }
     }
+
+    @Override
+    public long version() {
+        return collectionManager.getVersion();
+    }
+
+    @Override
+    public boolean lockFree() {
+        return true;
+    }
 }
@@ -0,0 +1,68 @@
+package com.ollogi.server.commands;
+
+import com.general.command.Command;
+import com.general.command.ReadOnly;
+import com.general.command.Streamable;
+import com.general.exceptions.WrongAmountOfElementsException;
+import com.general.models.Flat;
+import com.general.network.Request;
+import com.general.network.Response;
+import com.general.network.StreamedResponse;
+import com.ollogi.server.managers.FlatCollectionManager;
+
+import java.util.List;
+
+/**
+ * Команда 'show_by_house'. Выводит квартиры дома с заданным именем в порядке их имен.
+ * Квартиры берутся из индекса домов {@link FlatCollectionManager}, без обхода коллекции,
+ * и преобразуются в строки лениво, по мере отправки клиенту.
+ */
+public class ShowByHouse extends Command implements Streamable, ReadOnly {
+    private final FlatCollectionManager collectionManager;
+
+    public ShowByHouse(FlatCollectionManager collectionManager) {
+        super("show_by_house house_name", "вывести квартиры дома с заданным именем");
+        this.collectionManager = collectionManager;
+    }
+
+    /**
+     * Выполняет команду
+     *
+     * @return Response с результатом выполнения команды.
+     */
+    @Override
+    public Response execute(Request request) {
+        return stream(request).toResponse();
+    }
+
+    /**
+     * Подготавливает потоковый вывод квартир дома
+     *
+     * @return Строки с квартирами и завершающий ответ.
+     */
+    @Override
+    public StreamedResponse stream(Request request) {
+        try {
+            if (request.getData() == null || !(request.getData() instanceof String[] args)) {
+                throw new WrongAmountOfElementsException();
+            }
+
+            String houseName = args[1];
+            if (houseName.isEmpty()) {
+                throw new WrongAmountOfElementsException();
+            }
+
+            // Копия снимается сразу: строки формируются уже после выполнения команды
+            List<Flat> flats = List.copyOf(collectionManager.getByHouse(houseName));
+
+            if (flats.isEmpty()) {
+                return StreamedResponse.of(new Response(false, "Квартир в доме '" + houseName + "' не обнаружено."));
+            } else {
+                return new StreamedResponse(flats.stream().map(Flat::toString), new Response(true,
+                        "Квартир в доме '" + houseName + "' обнаружено " + flats.size() + " шт."));
+            }
+        } catch (WrongAmountOfElementsException exception) {
+            return StreamedResponse.of(new Response(false, "Неправильное количество аргументов! Правильное использование: '" + getName() + "'"));
+        }
+    }
+}
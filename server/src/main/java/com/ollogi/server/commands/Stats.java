@@ -0,0 +1,63 @@
+package com.ollogi.server.commands;
+
+import com.general.command.Cacheable;
+import com.general.command.Command;
+import com.general.network.Request;
+import com.general.network.Response;
+import com.ollogi.server.managers.FlatCollectionManager;
+import com.ollogi.server.managers.RunningStats;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Команда 'stats'. Выводит количество, сумму, минимум, максимум и среднее числовых полей квартир.
+ * Значения берутся из {@link RunningStats} и не требуют обхода коллекции.
+ */
+public class Stats extends Command implements Cacheable {
+    private final FlatCollectionManager collectionManager;
+
+    public Stats(FlatCollectionManager collectionManager) {
+        super("stats", "вывести количество, сумму, минимум, максимум и среднее числовых полей элементов коллекции");
+        this.collectionManager = collectionManager;
+    }
+
+    /**
+     * Выполняет команду
+     * @return Response с результатом выполнения команды.
+     */
+    @Override
+    public Response execute(Request request) {
+        if (request.getData() != null) {
+            return new Response(false, "Неправильное количество аргументов! Правильное использование: '" + getName() + "'");
+        }
+        if (collectionManager.collectionSize() == 0) {
+            return new Response(false, "Коллекция пуста!");
+        }
+
+        StringBuilder message = new StringBuilder("Статистика полей квартир:");
+        for (Map.Entry<String, RunningStats> entry : collectionManager.getFieldStats().entrySet()) {
+            RunningStats stats = entry.getValue();
+            message.append(String.format("\n %s: количество %d, сумма %s, минимум %s, максимум %s, среднее %s",
+                    entry.getKey(), stats.count(), format(stats.sum()), format(stats.min()),
+                    format(stats.max()), format(stats.average())));
+        }
+        return new Response(true, message.toString());
+    }
+
+    private static String format(Number value) {
+        if (value == null) return "-";
+        if (value instanceof Long) return value.toString();
+        return String.format(Locale.ROOT, "%.2f", value.doubleValue());
+    }
+
+    @Override
+    public long version() {
+        return collectionManager.getVersion();
+    }
+
+    @Override
+    public boolean optimistic() {
+        return true;
+    }
+}
@@ -1,20 +1,23 @@
 package com.ollogi.server.commands;
 
+import com.general.command.Cacheable;
 import com.general.command.Command;
 import com.general.exceptions.CollectionIsEmptyException;
 import com.general.exceptions.WrongAmountOfElementsException;
-import com.general.managers.CollectionManager;
-import com.general.models.Flat;
 import com.general.network.Request;
 import com.general.network.Response;
+import com.ollogi.server.managers.FlatCollectionManager;
+import com.ollogi.server.managers.RunningStats;
 
 /**
  * Команда 'sum_of_height'. Сумма значений поля height для всех квартир.
+ * Сумма берется из {@link RunningStats}, который {@link FlatCollectionManager} обновляет при каждом изменении,
+ * и считается в {@code long}, поэтому не переполняется.
  */
-public class SumOfHeight extends Command {
-    private final CollectionManager<Flat> collectionManager;
+public class SumOfHeight extends Command implements Cacheable {
+    private final FlatCollectionManager collectionManager;
 
-    public SumOfHeight(CollectionManager<Flat> collectionManager) {
+    public SumOfHeight(FlatCollectionManager collectionManager) {
         super("sum_of_height", "вывести сумму значений поля height для всех элементов коллекции");
         this.collectionManager = collectionManager;
     }
@@ -30,12 +33,12 @@ public class SumOfHeight extends Command {
                 throw new WrongAmountOfElementsException();
             }
 
-            int sumOfHeight = getSumOfHeight();
-            if (sumOfHeight == 0) {
+            RunningStats heightStats = collectionManager.getHeightStats();
+            if (heightStats.count() == 0) {
                 throw new CollectionIsEmptyException();
             }
 
-            String resultMessage = "Сумма значений поля height для всех квартир: " + sumOfHeight;
+            String resultMessage = "Сумма значений поля height для всех квартир: " + heightStats.sum();
             return new Response(true, resultMessage);
 
         } catch (WrongAmountOfElementsException exception) {
@@ -45,9 +48,13 @@ public class SumOfHeight extends Command {
         }
     }
 
-    private int getSumOfHeight() {
-        return collectionManager.getCollection().stream()
-                .mapToInt(Flat::getHeight)
-                .sum();
+    @Override
+    public long version() {
+        return collectionManager.getVersion();
+    }
+
+    @Override
+    public boolean optimistic() {
+        return true;
     }
 }
@@ -10,8 +10,6 @@ import com.general.models.base.Element;
 import com.general.network.Request;
 import com.general.network.Response;
 
-import java.util.Optional;
-
 /**
  * Команда 'update'. Обновляет элемент коллекции.
  */
@@ -47,32 +45,27 @@ public class Update<T extends Element & Comparable<T>> extends Command {
                 throw new CollectionIsEmptyException();
             }
 
-            // Ищем элемент по ID с использованием Stream API
-            Optional<T> optionalElement = collectionManager.getCollection().stream()
-                    .filter(element -> element.getId().equals(id))
-                    .findFirst();
+            // Ищем элемент по индексу ID
+            T existingElement = collectionManager.getById(id);
 
-            if (optionalElement.isEmpty()) {
+            if (existingElement == null) {
                 return new Response(false, "Элемента с таким ID в коллекции нет!");
             }
 
-            T existingElement = optionalElement.get();
+            if (!existingElement.isOwnedBy(request.getUserId())) {
+                return new Response(false, "Элемент принадлежит другому пользователю!");
+            }
 
             // Проверяем валидность нового элемента
             if (!newElement.validate()) {
                 throw new InvalidFormException();
             }
 
-            // Сохраняем ID у нового элемента
-            newElement.setId(id);
-
-            // Обновляем коллекцию
-            collectionManager.removeFromCollection(existingElement);
-            collectionManager.addToCollection(newElement);
+            // Сохраняем владельца у нового элемента
+            newElement.setUserId(existingElement.getUserId() != null ? existingElement.getUserId() : request.getUserId());
 
-            // Сохраняем ID у нового элемента
-            newElement.setId(id);
-            collectionManager.sortCollection();
+            // Заменяем элемент, сохраняя его ID
+            collectionManager.replaceInCollection(existingElement, newElement);
 
             return new Response(true, "Элемент успешно обновлен.");
 
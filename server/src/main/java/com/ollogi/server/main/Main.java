@@ -9,23 +9,39 @@ import com.general.network.Request;
 import com.general.network.Response;
 import com.ollogi.server.commands.*;
 import com.ollogi.server.managers.FlatCollectionManager;
+import com.ollogi.server.managers.SessionManager;
 import com.ollogi.server.managers.UseManager;
+import com.ollogi.server.managers.UserStore;
+import com.ollogi.server.network.AsyncTCPServer;
 import com.ollogi.server.network.Handler;
+import com.ollogi.server.network.ResponseCache;
+import com.ollogi.server.network.Server;
+import com.ollogi.server.network.Subscriptions;
 import com.ollogi.server.network.TCPServer;
+import com.ollogi.server.network.WorkerPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Objects;
 import java.util.Scanner;
 
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
     private static final int PORT = 28374;
+    private static final int REACTORS = Integer.getInteger("server.reactors", Runtime.getRuntime().availableProcessors());
+    private static final int WORKERS = Integer.getInteger("server.workers", Runtime.getRuntime().availableProcessors());
+    private static final int WORKER_QUEUE = Integer.getInteger("server.workerQueue", 1024);
+    private static final String ENGINE = System.getProperty("server.engine", "selector");
+    private static volatile Server server;
+    private static SessionManager sessionManager;
+    private static final Subscriptions subscriptions = new Subscriptions();
+    private static final ResponseCache responseCache = new ResponseCache();
 
     public static void main(String[] args) {
         Interrogator.setUserScanner(new Scanner(System.in));
-        CollectionManager<Flat> collectionManager = null;
+        FlatCollectionManager collectionManager = null;
 
         if (args.length == 0) {
             logger.info("Введите имя загружаемого файла как аргумент командной строки");
@@ -39,11 +55,12 @@ public class Main {
         if (collectionManager != null) {
             addShutdownHook(collectionManager);
             CommandManager commandManager = initializeCommandManager(collectionManager);
+            collectionManager.addListener(subscriptions);
             startServer(commandManager);
         }
     }
 
-    private static CollectionManager<Flat> waitForFileName() {
+    private static FlatCollectionManager waitForFileName() {
         Scanner scanner = Interrogator.getUserScanner();
         while (true) {
             logger.info("Введите имя файла: ");
@@ -64,7 +81,7 @@ public class Main {
         }
     }
 
-    private static CollectionManager<Flat> initializeCollectionManager(String fileName) {
+    private static FlatCollectionManager initializeCollectionManager(String fileName) {
         try {
             if (!Files.isReadable(Paths.get(fileName))) {
                 if (!Files.isReadable(Paths.get("../" + fileName))) {
@@ -77,6 +94,9 @@ public class Main {
             UseManager useManager = new UseManager(fileName);
             FlatCollectionManager collectionManager = new FlatCollectionManager(useManager);
             collectionManager.validateAll();
+            sessionManager = new SessionManager(new UserStore(fileName));
+            collectionManager.getCollection().stream().map(Flat::getUserId).filter(Objects::nonNull)
+                    .forEach(sessionManager::reserveUserIds);
             return collectionManager;
         } catch (Exception e) {
             logger.error("Ошибка инициализации CollectionManager: " + e.getMessage());
@@ -87,34 +107,43 @@ public class Main {
     private static void addShutdownHook(CollectionManager<Flat> collectionManager) {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             logger.info("Сохранение коллекции перед завершением работы...");
-            collectionManager.saveCollection();
+            save(collectionManager);
         }));
     }
 
-    private static CommandManager initializeCommandManager(CollectionManager<Flat> collectionManager) {
-        CommandManager commandManager = new CommandManager();
+    private static CommandManager initializeCommandManager(FlatCollectionManager collectionManager) {
+        CommandManager commandManager = new CommandManager(collectionManager);
         initCommands(collectionManager, commandManager);
         return commandManager;
     }
 
     private static void startServer(CommandManager commandManager) {
         Handler.setCommandManager(commandManager);
-        new TCPServer(PORT).start();
+        Handler.setSessionManager(sessionManager);
+        Handler.setSubscriptions(subscriptions);
+        Handler.setResponseCache(responseCache);
+        WorkerPool workerPool = new WorkerPool(WORKERS, WORKER_QUEUE);
+        server = "async".equalsIgnoreCase(ENGINE)
+                ? new AsyncTCPServer(PORT, REACTORS, workerPool)
+                : new TCPServer(PORT, REACTORS, workerPool);
+        server.start();
     }
 
-    public static void initCommands(CollectionManager<Flat> collectionManager, CommandManager commandManager) {
+    public static void initCommands(FlatCollectionManager collectionManager, CommandManager commandManager) {
         commandManager.register("help", new Help(commandManager));
         commandManager.register("info", new Info(collectionManager));
         commandManager.register("show", new Show<>(collectionManager));
         commandManager.register("add", new Add<>(collectionManager));
         commandManager.register("update", new Update<>(collectionManager));
         commandManager.register("remove_by_id", new RemoveById<>(collectionManager));
-        commandManager.register("clear", new Clear(collectionManager));
+        commandManager.register("clear", new Clear<>(collectionManager));
         commandManager.register("remove_greater", new RemoveGreater<>(collectionManager));
         commandManager.register("remove_lower", new RemoveLower<>(collectionManager));
         commandManager.register("add_if_min", new AddIfMin<>(collectionManager));
         commandManager.register("sum_of_height", new SumOfHeight(collectionManager));
+        commandManager.register("stats", new Stats(collectionManager));
         commandManager.register("group_counting_by_house", new GroupCountingByHouse(collectionManager));
+        commandManager.register("show_by_house", new ShowByHouse(collectionManager));
         commandManager.register("filter_starts_with_name", new FilterStartsWithName(collectionManager));
         Command executeScriptCommand = new Command("execute_script", "исполнить скрипт из указанного файла") {
 
@@ -132,6 +161,18 @@ public class Main {
 
 
 
+    /**
+     * Сохраняет коллекцию под блокировкой записи, чтобы сохранение не совпало с выполнением команд.
+     *
+     * @param collectionManager коллекция
+     */
+    private static void save(CollectionManager<Flat> collectionManager) {
+        collectionManager.write(() -> {
+            collectionManager.saveCollection();
+            return null;
+        });
+    }
+
     private static void startConsoleListener(CollectionManager<Flat> collectionManager) {
         new Thread(() -> {
             Scanner scanner = new Scanner(System.in);
@@ -139,11 +180,13 @@ public class Main {
                 String input = scanner.nextLine().trim();
                 if ("exit".equalsIgnoreCase(input)) {
                     logger.info("Завершение работы программы...");
-                    collectionManager.saveCollection();
+                    save(collectionManager);
                     System.exit(0);
                 } else if ("save".equalsIgnoreCase(input)) {
                     logger.info("Сохранение коллекции...");
-                    collectionManager.saveCollection();
+                    save(collectionManager);
+                } else if ("stats".equalsIgnoreCase(input)) {
+                    if (server != null) logger.info(server.stats() + "\n" + subscriptions.stats() + "\n" + responseCache.stats());
                 } else {
                     logger.warn("Неизвестная команда: " + input);
                 }
@@ -6,15 +6,32 @@ import com.general.models.base.Element;
 
 import java.time.LocalDateTime;
 import java.util.Collection;
-import java.util.Comparator;
-import java.util.PriorityQueue;
-import java.util.stream.Collectors;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 
 /**
  * Оперирует коллекцией объектов Flat.
+ * Квартиры хранятся в {@link TreeSet}, упорядоченном по имени и ID: добавление и удаление стоят O(log n),
+ * а обход сразу идет в порядке имен. Квартиры с общим префиксом имени лежат в нем подряд, поэтому поиск
+ * по префиксу — это выборка поддиапазона за O(log n + k).
+ * <p>
+ * Кроме того, квартиры сгруппированы по имени дома: группировка и выборка квартир одного дома
+ * не требуют обхода всей коллекции, а для числовых полей height, area, numberOfRooms и kitchenArea
+ * поддерживается {@link RunningStats}.
  */
 public class FlatCollectionManager extends CollectionManager<Flat> {
     private final UseManager useManager;
+    private final Map<String, NavigableSet<Flat>> byHouse = new HashMap<>();
+    private final RunningStats heightStats = new RunningStats(true);
+    private final RunningStats areaStats = new RunningStats(true);
+    private final RunningStats roomsStats = new RunningStats(true);
+    private final RunningStats kitchenAreaStats = new RunningStats(false);
 
     public FlatCollectionManager(UseManager useManager) {
         this.useManager = useManager;
@@ -23,14 +40,13 @@ public class FlatCollectionManager extends CollectionManager<Flat> {
 
     @Override
     protected Collection<Flat> createCollection() {
-        return new PriorityQueue<>();
+        return new TreeSet<>(nameOrder());
     }
 
     @Override
     protected void loadCollection() {
         Collection<Flat> loadedCollection = useManager.readCollection();
         setCollection(loadedCollection);
-        sortCollection();  // Сортировка коллекции при загрузке
         setLastInitTime(LocalDateTime.now());
 
         Long maxId = getCollection().stream()
@@ -51,33 +67,130 @@ public class FlatCollectionManager extends CollectionManager<Flat> {
         return element.getId();
     }
 
-    private void setCollection(Collection<Flat> collection) {
-        super.getCollection().clear();
-        super.getCollection().addAll(collection);
+    /**
+     * Возвращает квартиры, имена которых начинаются с префикса, в порядке имен.
+     *
+     * @param prefix префикс имени
+     * @param limit  максимальное количество квартир
+     * @return не более limit квартир
+     */
+    public List<Flat> findByNamePrefix(String prefix, int limit) {
+        NavigableSet<Flat> flats = (NavigableSet<Flat>) collection();
+        String upper = prefixUpperBound(prefix);
+        NavigableSet<Flat> range = upper == null
+                ? flats.tailSet(probe(prefix), true)
+                : flats.subSet(probe(prefix), true, probe(upper), false);
+
+        List<Flat> found = new ArrayList<>(Math.min(limit, 64));
+        for (Flat flat : range) {
+            if (found.size() == limit) break;
+            found.add(flat);
+        }
+        return found;
     }
 
-    @Override
-    public Long addToCollection(Flat element) {
-        Long id = super.addToCollection(element);
-        sortCollection();
-        return id;
+    /**
+     * Возвращает наименьшую строку, которая больше всех строк с данным префиксом.
+     *
+     * @param prefix префикс
+     * @return граница диапазона или null, если диапазон не ограничен сверху
+     */
+    private static String prefixUpperBound(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) end--;
+        if (end == 0) return null;
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
     }
 
-    @Override
-    public void removeFromCollection(Flat element) {
-        super.removeFromCollection(element);
-        sortCollection();
+    /**
+     * Создает квартиру-границу для выборки диапазона: без ID она предшествует всем квартирам с тем же именем.
+     *
+     * @param name имя
+     * @return квартира только с именем
+     */
+    private static Flat probe(String name) {
+        Flat probe = new Flat();
+        probe.setName(name);
+        return probe;
+    }
+
+    /**
+     * Возвращает количество квартир в каждом доме за O(количества домов).
+     *
+     * @return новая таблица из имени дома в количество квартир
+     */
+    public Map<String, Long> countByHouse() {
+        Map<String, Long> counts = new HashMap<>();
+        byHouse.forEach((house, flats) -> counts.put(house, (long) flats.size()));
+        return counts;
     }
 
     /**
-     * Сортирует коллекцию по имени.
+     * Возвращает квартиры дома в порядке имен.
+     *
+     * @param houseName имя дома
+     * @return квартиры дома только для чтения; пустое множество, если таких квартир нет
      */
+    public NavigableSet<Flat> getByHouse(String houseName) {
+        NavigableSet<Flat> flats = byHouse.get(houseName);
+        return flats == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(flats);
+    }
+
+    /**
+     * Возвращает текущую статистику по полям квартир.
+     *
+     * @return таблица из имени поля в его статистику в порядке height, area, numberOfRooms, kitchenArea
+     */
+    public Map<String, RunningStats> getFieldStats() {
+        Map<String, RunningStats> stats = new LinkedHashMap<>();
+        stats.put("height", heightStats);
+        stats.put("area", areaStats);
+        stats.put("numberOfRooms", roomsStats);
+        stats.put("kitchenArea", kitchenAreaStats);
+        return stats;
+    }
+
+    /**
+     * @return текущая статистика поля height
+     */
+    public RunningStats getHeightStats() {
+        return heightStats;
+    }
+
     @Override
-    public void sortCollection() {
-        setCollection(
-                getCollection().stream()
-                        .sorted(Comparator.comparing(Flat::getName))
-                        .collect(Collectors.toCollection(PriorityQueue::new))
-        );
+    protected void onAdded(Flat flat) {
+        String house = houseName(flat);
+        if (house != null) byHouse.computeIfAbsent(house, key -> new TreeSet<>(nameOrder())).add(flat);
+        heightStats.add(flat.getHeight());
+        areaStats.add(flat.getArea());
+        roomsStats.add(flat.getNumberOfRooms());
+        kitchenAreaStats.add(flat.getKitchenArea());
+    }
+
+    @Override
+    protected void onRemoved(Flat flat) {
+        String house = houseName(flat);
+        NavigableSet<Flat> flats = house == null ? null : byHouse.get(house);
+        if (flats != null) {
+            flats.remove(flat);
+            if (flats.isEmpty()) byHouse.remove(house);
+        }
+        heightStats.remove(flat.getHeight());
+        areaStats.remove(flat.getArea());
+        roomsStats.remove(flat.getNumberOfRooms());
+        kitchenAreaStats.remove(flat.getKitchenArea());
+    }
+
+    @Override
+    protected void onCleared() {
+        byHouse.clear();
+        heightStats.clear();
+        areaStats.clear();
+        roomsStats.clear();
+        kitchenAreaStats.clear();
+    }
+
+    private static String houseName(Flat flat) {
+        return flat.getHouse() == null ? null : flat.getHouse().getName();
     }
 }
@@ -0,0 +1,119 @@
+package com.ollogi.server.managers;
+
+import java.math.BigDecimal;
+import java.util.TreeMap;
+
+/**
+ * Текущие количество, сумма, минимум и максимум значений одного числового поля элементов коллекции.
+ * Обновляется при каждом добавлении и удалении элемента, поэтому значения читаются за O(1), без обхода коллекции.
+ * Целые значения суммируются в {@code long}, дробные — в {@link BigDecimal}, чтобы сумма не накапливала
+ * ошибку округления при удалениях. Для минимума и максимума хранятся количества каждого значения:
+ * после удаления последнего минимального или максимального значения новое находится за O(log n).
+ * <p>
+ * Пустые (null) значения не учитываются.
+ */
+public class RunningStats {
+    private final boolean integral;
+    private final TreeMap<Double, Integer> counts = new TreeMap<>();
+    private long count = 0;
+    private long longSum = 0;
+    private BigDecimal decimalSum = BigDecimal.ZERO;
+    private Double min;
+    private Double max;
+
+    /**
+     * Создает пустую статистику.
+     *
+     * @param integral true, если поле целочисленное
+     */
+    public RunningStats(boolean integral) {
+        this.integral = integral;
+    }
+
+    /**
+     * Учитывает значение добавленного элемента.
+     *
+     * @param value значение или null
+     */
+    public void add(Number value) {
+        if (value == null) return;
+        double key = value.doubleValue();
+        counts.merge(key, 1, Integer::sum);
+        count++;
+        if (integral) longSum += value.longValue();
+        else decimalSum = decimalSum.add(new BigDecimal(key));
+        if (min == null || key < min) min = key;
+        if (max == null || key > max) max = key;
+    }
+
+    /**
+     * Исключает значение удаленного элемента.
+     *
+     * @param value значение или null
+     */
+    public void remove(Number value) {
+        if (value == null) return;
+        double key = value.doubleValue();
+        Integer left = counts.computeIfPresent(key, (k, c) -> c == 1 ? null : c - 1);
+        count--;
+        if (integral) longSum -= value.longValue();
+        else decimalSum = decimalSum.subtract(new BigDecimal(key));
+        if (left == null) {
+            if (min != null && key == min) min = counts.isEmpty() ? null : counts.firstKey();
+            if (max != null && key == max) max = counts.isEmpty() ? null : counts.lastKey();
+        }
+    }
+
+    /**
+     * Сбрасывает статистику.
+     */
+    public void clear() {
+        counts.clear();
+        count = 0;
+        longSum = 0;
+        decimalSum = BigDecimal.ZERO;
+        min = null;
+        max = null;
+    }
+
+    /**
+     * @return количество учтенных значений
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return сумма значений: {@link Long} для целочисленного поля, {@link BigDecimal} для дробного
+     */
+    public Number sum() {
+        return integral ? (Number) longSum : decimalSum;
+    }
+
+    /**
+     * @return минимальное значение или null, если значений нет
+     */
+    public Number min() {
+        return unwrap(min);
+    }
+
+    /**
+     * @return максимальное значение или null, если значений нет
+     */
+    public Number max() {
+        return unwrap(max);
+    }
+
+    /**
+     * @return среднее значение или null, если значений нет
+     */
+    public Double average() {
+        if (count == 0) return null;
+        return (integral ? (double) longSum : decimalSum.doubleValue()) / count;
+    }
+
+    private Number unwrap(Double value) {
+        if (value == null || !integral) return value;
+        return value.longValue();
+    }
+}
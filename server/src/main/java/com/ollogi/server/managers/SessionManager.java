@@ -0,0 +1,205 @@
+package com.ollogi.server.managers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Класс SessionManager выполняет вход пользователей и хранит их сессии.
+ * Учетные данные проверяются один раз при входе; дальше запросы соединения связываются с пользователем через сессию.
+ * Пользователь регистрируется отдельным запросом, а вход под незарегистрированным логином отклоняется. Пароли
+ * хранятся в виде соленого хеша SHA-256; пользователи вместе с идентификаторами сохраняются в {@link UserStore},
+ * поэтому владельцы элементов коллекции не меняются после перезапуска сервера.
+ * Сессия действует {@code server.sessionTtlMillis} с момента входа и может быть восстановлена по токену
+ * после переподключения.
+ */
+public class SessionManager {
+    private static final Logger logger = LoggerFactory.getLogger(SessionManager.class);
+    private static final long SESSION_TTL_MILLIS = Long.getLong("server.sessionTtlMillis", 24 * 60 * 60 * 1000L);
+    private static final int SALT_SIZE = 16;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextUserId = new AtomicInteger(1);
+    private final UserStore userStore;
+
+    /**
+     * Создает менеджер сессий, пользователи которого хранятся только в памяти.
+     */
+    public SessionManager() {
+        this.userStore = null;
+    }
+
+    /**
+     * Создает менеджер сессий и загружает сохраненных пользователей.
+     *
+     * @param userStore Хранилище пользователей.
+     */
+    public SessionManager(UserStore userStore) {
+        this.userStore = userStore;
+        for (UserStore.StoredUser stored : userStore.read()) {
+            Base64.Decoder decoder = Base64.getDecoder();
+            users.put(stored.login(), new User(stored.userId(), decoder.decode(stored.salt()), decoder.decode(stored.passwordHash())));
+            reserveUserIds(stored.userId());
+        }
+    }
+
+    /**
+     * Гарантирует, что новые пользователи получат идентификаторы больше указанного. Используется, чтобы
+     * не выдать идентификатор, которым уже помечены элементы коллекции.
+     *
+     * @param userId Занятый идентификатор.
+     */
+    public void reserveUserIds(int userId) {
+        nextUserId.accumulateAndGet(userId + 1, Math::max);
+    }
+
+    /**
+     * Регистрирует пользователя и сохраняет его в хранилище, после чего выполняет вход.
+     *
+     * @param login    Логин.
+     * @param password Пароль.
+     * @return Новая сессия или null, если логин пуст, уже занят или пользователя не удалось сохранить.
+     */
+    public synchronized Session register(String login, String password) {
+        if (login == null || login.isBlank() || password == null || users.containsKey(login)) return null;
+        byte[] salt = new byte[SALT_SIZE];
+        random.nextBytes(salt);
+        User user = new User(nextUserId.getAndIncrement(), salt, hash(salt, password));
+        users.put(login, user);
+        if (userStore != null) {
+            try {
+                userStore.write(storedUsers());
+            } catch (IOException e) {
+                logger.error("Не удалось сохранить пользователя {}: {}", login, e.getMessage());
+                users.remove(login);
+                return null;
+            }
+        }
+        logger.info("Зарегистрирован пользователь {}", login);
+        return open(user, login);
+    }
+
+    /**
+     * Выполняет вход по логину и паролю зарегистрированного пользователя.
+     *
+     * @param login    Логин.
+     * @param password Пароль.
+     * @return Новая сессия или null, если пользователь не зарегистрирован или пароль неверен.
+     */
+    public Session login(String login, String password) {
+        if (login == null || password == null) return null;
+        User user = users.get(login);
+        if (user == null || !MessageDigest.isEqual(user.passwordHash(), hash(user.salt(), password))) return null;
+        return open(user, login);
+    }
+
+    /**
+     * Открывает новую сессию пользователя, попутно удаляя истекшие.
+     *
+     * @param user  Пользователь.
+     * @param login Логин пользователя.
+     * @return Новая сессия.
+     */
+    private Session open(User user, String login) {
+        sessions.values().removeIf(Session::isExpired);
+        long token;
+        do {
+            token = random.nextLong();
+        } while (token == 0 || sessions.containsKey(token));
+        Session session = new Session(token, user.userId(), login, System.currentTimeMillis());
+        sessions.put(token, session);
+        return session;
+    }
+
+    /**
+     * Восстанавливает сессию по токену.
+     *
+     * @param token Токен сессии.
+     * @return Сессия или null, если она не найдена или истекла.
+     */
+    public Session resume(long token) {
+        Session session = sessions.get(token);
+        if (session == null) return null;
+        if (session.isExpired()) {
+            sessions.remove(token);
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * Завершает сессию.
+     *
+     * @param session Сессия.
+     */
+    public void logout(Session session) {
+        sessions.remove(session.token());
+    }
+
+    /**
+     * Возвращает всех пользователей в виде для сохранения.
+     *
+     * @return Сохраняемые данные пользователей.
+     */
+    private List<UserStore.StoredUser> storedUsers() {
+        Base64.Encoder encoder = Base64.getEncoder();
+        return users.entrySet().stream()
+                .map(entry -> new UserStore.StoredUser(entry.getKey(), entry.getValue().userId(),
+                        encoder.encodeToString(entry.getValue().salt()), encoder.encodeToString(entry.getValue().passwordHash())))
+                .sorted(Comparator.comparingInt(UserStore.StoredUser::userId))
+                .toList();
+    }
+
+    /**
+     * Вычисляет соленый хеш пароля.
+     *
+     * @param salt     Соль.
+     * @param password Пароль.
+     * @return Хеш SHA-256.
+     */
+    private static byte[] hash(byte[] salt, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Сессия пользователя.
+     *
+     * @param token     Токен сессии.
+     * @param userId    Идентификатор пользователя.
+     * @param login     Логин пользователя.
+     * @param createdAt Момент входа.
+     */
+    public record Session(long token, int userId, String login, long createdAt) {
+        /**
+         * @return true, если срок действия сессии истек.
+         */
+        public boolean isExpired() {
+            return System.currentTimeMillis() - createdAt > SESSION_TTL_MILLIS;
+        }
+    }
+
+    /**
+     * Зарегистрированный пользователь.
+     */
+    private record User(int userId, byte[] salt, byte[] passwordHash) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.ollogi.server.managers;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Класс UserStore сохраняет зарегистрированных пользователей в файл рядом с файлом коллекции и загружает их.
+ * Вместе с логином хранятся идентификатор пользователя, соль и хеш пароля: по идентификатору элементы коллекции
+ * связаны с владельцем, поэтому он должен оставаться прежним после перезапуска сервера.
+ */
+public class UserStore {
+    private static final Logger logger = LoggerFactory.getLogger(UserStore.class);
+
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Path file;
+
+    /**
+     * Создает хранилище пользователей для коллекции.
+     *
+     * @param collectionFileName Имя файла коллекции; пользователи хранятся в файле {@code <имя>.users.json}
+     *                           в том же каталоге.
+     */
+    public UserStore(String collectionFileName) {
+        Path collectionFile = Paths.get(collectionFileName);
+        String name = collectionFile.getFileName().toString().replaceFirst("\\.json$", "");
+        this.file = collectionFile.resolveSibling(name + ".users.json");
+    }
+
+    /**
+     * Считывает пользователей из файла. Отсутствующий файл означает, что пользователей еще нет.
+     *
+     * @return Сохраненные пользователи.
+     * @throws IllegalStateException если файл не удалось прочитать: сервер не должен выдавать новым пользователям
+     *                               идентификаторы, которые уже принадлежат владельцам элементов.
+     */
+    public List<StoredUser> read() {
+        if (!Files.exists(file)) return new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<StoredUser> users = gson.fromJson(reader, new TypeToken<List<StoredUser>>() {}.getType());
+            logger.info("Загружено пользователей: {}", users == null ? 0 : users.size());
+            return users == null ? new ArrayList<>() : users;
+        } catch (IOException | JsonParseException exception) {
+            throw new IllegalStateException("Файл пользователей " + file + " не может быть прочитан: " + exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Записывает пользователей во временный файл и заменяет им прежний, чтобы сбой во время записи
+     * не оставил файл пользователей испорченным.
+     *
+     * @param users Все зарегистрированные пользователи.
+     * @throws IOException если файл не удалось записать.
+     */
+    public synchronized void write(Collection<StoredUser> users) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            gson.toJson(users, writer);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Сохраняемые данные пользователя.
+     *
+     * @param login        Логин.
+     * @param userId       Идентификатор пользователя.
+     * @param salt         Соль в кодировке Base64.
+     * @param passwordHash Соленый хеш пароля в кодировке Base64.
+     */
+    public record StoredUser(String login, int userId, String salt, String passwordHash) {
+    }
+}
@@ -0,0 +1,254 @@
+package com.ollogi.server.network;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Соединение движка NIO.2 на {@link AsynchronousSocketChannel}.
+ * В каждый момент у канала не больше одного незавершенного чтения и одной незавершенной записи; их завершение
+ * обрабатывается в потоках группы асинхронных каналов. Следующее чтение начинается только после того, как
+ * прочитанные кадры переданы в пул обработчиков, и только если соединение не перегружено: так сохраняется порядок
+ * запросов и ограничивается нагрузка от одного клиента. Запись, не завершившаяся за
+ * {@code server.writeStallTimeoutMillis}, считается зависшей, и соединение закрывается.
+ */
+public class AsyncConnection extends Connection {
+    private static final Logger logger = LoggerFactory.getLogger("AsyncConnection");
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int MAX_GATHER_BUFFERS = 64;
+
+    private final AsynchronousSocketChannel channel;
+    private final ReadHandler readHandler = new ReadHandler();
+    private final WriteHandler writeHandler = new WriteHandler();
+
+    private final Deque<ByteBuffer> outbound = new ArrayDeque<>();
+    private volatile long outboundBytes = 0;
+    private boolean writing = false;
+    private boolean reading = false;
+
+    /**
+     * Создает состояние соединения.
+     *
+     * @param channel    Асинхронный канал сокета клиента.
+     * @param workerPool Пул, в котором выполняются обработчики запросов соединения.
+     * @param bufferPool Пул буферов для чтения и записи.
+     * @param onClose    Действие, выполняемое один раз при закрытии соединения.
+     */
+    public AsyncConnection(AsynchronousSocketChannel channel, WorkerPool workerPool, BufferPool bufferPool, Runnable onClose) {
+        super(workerPool, bufferPool, onClose);
+        this.channel = channel;
+    }
+
+    /**
+     * Начинает чтение запросов из канала.
+     */
+    public void start() {
+        loadChanged();
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        try {
+            return channel.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public long getOutboundBytes() {
+        return outboundBytes;
+    }
+
+    /**
+     * Ставит буферы в очередь отправки и, если запись не идет, начинает ее.
+     *
+     * @param buffers Буферы для отправки, например заголовок и тело кадра.
+     */
+    @Override
+    public void send(ByteBuffer... buffers) {
+        long size = 0;
+        for (ByteBuffer buffer : buffers) size += buffer.remaining();
+
+        synchronized (outbound) {
+            if (outboundBytes + size > MAX_OUTBOUND_BYTES) {
+                logger.warn("Превышен объем неотправленных данных ({} байт), соединение закрывается", outboundBytes + size);
+                for (ByteBuffer buffer : buffers) getBufferPool().release(buffer);
+                close();
+                return;
+            }
+            for (ByteBuffer buffer : buffers) outbound.add(buffer);
+            outboundBytes += size;
+            if (writing) return;
+            writing = true;
+            writeProgressed();
+        }
+        write();
+    }
+
+    /**
+     * Начинает очередное чтение, если оно еще не идет и соединение не перегружено.
+     */
+    @Override
+    protected void loadChanged() {
+        synchronized (this) {
+            if (reading || isClosed() || isOverloaded()) return;
+            reading = true;
+        }
+        ByteBuffer buffer = getBufferPool().lease(READ_BUFFER_SIZE);
+        try {
+            channel.read(buffer, buffer, readHandler);
+        } catch (RuntimeException e) {
+            getBufferPool().release(buffer);
+            logger.error("Ошибка чтения данных: {}", e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Начинает gathering-запись накопленных исходящих буферов.
+     */
+    private void write() {
+        ByteBuffer[] buffers;
+        synchronized (outbound) {
+            buffers = outbound.stream().limit(MAX_GATHER_BUFFERS).toArray(ByteBuffer[]::new);
+        }
+        try {
+            channel.write(buffers, 0, buffers.length, WRITE_STALL_MILLIS, TimeUnit.MILLISECONDS, null, writeHandler);
+        } catch (RuntimeException e) {
+            logger.error("Ошибка отправки ответа: {}", e.getMessage());
+            writeFailed();
+        }
+    }
+
+    /**
+     * Закрывает соединение после неудачной записи и освобождает буферы, которые удерживала запись.
+     */
+    private void writeFailed() {
+        close();
+        synchronized (outbound) {
+            writing = false;
+            releaseOutbound();
+        }
+    }
+
+    /**
+     * Возвращает в пул все исходящие буферы. Вызывается под блокировкой очереди.
+     */
+    private void releaseOutbound() {
+        for (ByteBuffer buffer : outbound) getBufferPool().release(buffer);
+        outbound.clear();
+        outboundBytes = 0;
+    }
+
+    /**
+     * Закрывает канал. Буферы, занятые незавершенной записью, освобождаются при ее завершении.
+     */
+    @Override
+    protected void closeChannel() {
+        synchronized (outbound) {
+            if (!writing) releaseOutbound();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Ошибка закрытия канала: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Обрабатывает завершение чтения: передает полученные кадры в пул и начинает следующее чтение.
+     */
+    private class ReadHandler implements CompletionHandler<Integer, ByteBuffer> {
+        @Override
+        public void completed(Integer bytesRead, ByteBuffer buffer) {
+            try {
+                if (bytesRead == -1) {
+                    logger.info("Соединение закрыто: {}", getRemoteAddress());
+                    close();
+                    return;
+                }
+                touch();
+                getFrameDecoder().append(buffer.flip());
+            } catch (IOException e) {
+                logger.error("Ошибка чтения данных: {}", e.getMessage());
+                close();
+                return;
+            } finally {
+                getBufferPool().release(buffer);
+            }
+
+            try {
+                dispatchBuffered();
+            } catch (IOException e) {
+                logger.error("Ошибка чтения данных: {}", e.getMessage());
+                close();
+                return;
+            }
+            synchronized (AsyncConnection.this) {
+                reading = false;
+            }
+            loadChanged();
+        }
+
+        @Override
+        public void failed(Throwable exc, ByteBuffer buffer) {
+            getBufferPool().release(buffer);
+            if (!(exc instanceof AsynchronousCloseException)) {
+                logger.error("Ошибка чтения данных: {}", exc.getMessage());
+            }
+            close();
+        }
+    }
+
+    /**
+     * Обрабатывает завершение записи: освобождает отправленные буферы, продолжает отложенные потоковые ответы
+     * и продолжает запись, если очередь не пуста.
+     */
+    private class WriteHandler implements CompletionHandler<Long, Void> {
+        @Override
+        public void completed(Long written, Void attachment) {
+            boolean more;
+            synchronized (outbound) {
+                if (isClosed()) {
+                    writing = false;
+                    releaseOutbound();
+                    return;
+                }
+                outboundBytes -= written;
+                if (written > 0) {
+                    touch();
+                    writeProgressed();
+                }
+                while (!outbound.isEmpty() && !outbound.peekFirst().hasRemaining()) {
+                    getBufferPool().release(outbound.pollFirst());
+                }
+                more = !outbound.isEmpty();
+                writing = more;
+            }
+            resume();
+            writableChanged();
+            if (more) write();
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            if (exc instanceof InterruptedByTimeoutException) {
+                logger.warn("Клиент не принимает данные дольше {} мс, соединение закрывается", WRITE_STALL_MILLIS);
+            } else if (!(exc instanceof AsynchronousCloseException)) {
+                logger.error("Ошибка отправки ответа: {}", exc.getMessage());
+            }
+            writeFailed();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.ollogi.server.network;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TCP-сервер на асинхронных каналах NIO.2 — альтернатива {@link TCPServer} с собственным циклом селектора.
+ * Прием, чтение и запись выполняются обработчиками завершения в потоках группы асинхронных каналов,
+ * а запросы, как и в {@link TCPServer}, выполняются в пуле обработчиков {@link WorkerPool}.
+ * Количество одновременных соединений ограничено: при достижении предела следующий прием не начинается,
+ * пока какое-нибудь из открытых соединений не закроется. Простаивающие соединения закрывает {@link IdleReaper},
+ * который работает в отдельном потоке по таймеру.
+ */
+public class AsyncTCPServer implements Server {
+    private static final Logger logger = LoggerFactory.getLogger("AsyncTCPServer");
+    private static final int MAX_CONNECTIONS = Integer.getInteger("server.maxConnections", 1024);
+    private static final long IDLE_TIMEOUT_MILLIS = Long.getLong("server.idleTimeoutMillis", 5 * 60 * 1000L);
+    private final int port;
+    private final int threadCount;
+    private final WorkerPool workerPool;
+    private final BufferPool bufferPool = new BufferPool();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicBoolean accepting = new AtomicBoolean();
+    private final LongAdder reapedConnections = new LongAdder();
+    private final IdleReaper idleReaper = new IdleReaper(IDLE_TIMEOUT_MILLIS, reapedConnections);
+    private final ScheduledExecutorService reaperExecutor =
+            Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "idle-reaper"));
+    private final AcceptHandler acceptHandler = new AcceptHandler();
+    private AsynchronousChannelGroup group;
+    private AsynchronousServerSocketChannel serverChannel;
+
+    /**
+     * Создает TCP-сервер на асинхронных каналах.
+     *
+     * @param port        Порт, на котором сервер будет прослушивать входящие соединения.
+     * @param threadCount Количество потоков группы асинхронных каналов.
+     * @param workerPool  Пул, в котором выполняются обработчики запросов.
+     */
+    public AsyncTCPServer(int port, int threadCount, WorkerPool workerPool) {
+        this.port = port;
+        this.threadCount = Math.max(threadCount, 1);
+        this.workerPool = workerPool;
+    }
+
+    @Override
+    public String stats() {
+        return String.format("Движок NIO.2, соединений: %d из %d, закрыто по простою %d",
+                connections.get(), MAX_CONNECTIONS, reapedConnections.sum()) + "\n"
+                + workerPool.stats() + "\n" + bufferPool.stats();
+    }
+
+    /**
+     * Открывает серверный канал, начинает прием соединений и ждет завершения группы каналов.
+     */
+    @Override
+    public void start() {
+        try {
+            AtomicInteger threadNumber = new AtomicInteger();
+            group = AsynchronousChannelGroup.withFixedThreadPool(threadCount,
+                    runnable -> new Thread(runnable, "async-io-" + threadNumber.getAndIncrement()));
+            serverChannel = AsynchronousServerSocketChannel.open(group).bind(new InetSocketAddress(port));
+            logger.info("Сервер NIO.2 запущен на порту {}, потоков ввода-вывода {}", port, threadCount);
+        } catch (IOException e) {
+            logger.error("Ошибка открытия серверного сокета: {}", e.getMessage());
+            return;
+        }
+        if (System.getProperty("server.unixSocket") != null) {
+            logger.warn("Сокеты домена Unix не поддерживаются движком NIO.2, свойство server.unixSocket игнорируется");
+        }
+        long tick = idleReaper.selectTimeout();
+        if (tick > 0) {
+            reaperExecutor.scheduleAtFixedRate(idleReaper::expire, tick, tick, TimeUnit.MILLISECONDS);
+        }
+
+        accepting.set(true);
+        accept();
+        try {
+            group.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Начинает прием очередного соединения.
+     */
+    private void accept() {
+        serverChannel.accept(null, acceptHandler);
+    }
+
+    /**
+     * Возобновляет прием соединений, если он был приостановлен из-за предела. Может вызываться из любого потока.
+     */
+    private void resumeAccept() {
+        if (accepting.compareAndSet(false, true)) accept();
+    }
+
+    /**
+     * Учитывает закрытие соединения и при необходимости возобновляет прием.
+     */
+    private void connectionClosed() {
+        if (connections.decrementAndGet() < MAX_CONNECTIONS) resumeAccept();
+    }
+
+    /**
+     * Обрабатывает принятое соединение и начинает прием следующего, если предел соединений не достигнут.
+     */
+    private class AcceptHandler implements CompletionHandler<AsynchronousSocketChannel, Void> {
+        @Override
+        public void completed(AsynchronousSocketChannel client, Void attachment) {
+            int count = connections.incrementAndGet();
+            AsyncConnection connection = new AsyncConnection(client, workerPool, bufferPool, AsyncTCPServer.this::connectionClosed);
+            logger.info("Новое соединение: {}", connection.getRemoteAddress());
+            reaperExecutor.execute(() -> idleReaper.register(connection));
+            connection.start();
+
+            if (count < MAX_CONNECTIONS) {
+                accept();
+                return;
+            }
+            accepting.set(false);
+            logger.warn("Достигнут предел соединений ({}), прием приостановлен", MAX_CONNECTIONS);
+            // Соединение могло закрыться до снятия признака: тогда прием нужно вернуть
+            if (connections.get() < MAX_CONNECTIONS) resumeAccept();
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            if (!serverChannel.isOpen()) return;
+            logger.error("Ошибка приема соединения: {}", exc.getMessage());
+            accept();
+        }
+    }
+}
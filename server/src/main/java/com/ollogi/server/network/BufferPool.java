@@ -0,0 +1,105 @@
+package com.ollogi.server.network;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пул прямых (direct) буферов для чтения запросов и записи ответов сервера.
+ * Буферы разбиты на классы размеров — степени двойки от {@link #MIN_CLASS_SIZE} до {@link #MAX_CLASS_SIZE}.
+ * Запрос на буфер округляется вверх до ближайшего класса; буфер больше максимального класса выделяется
+ * в куче и в пул не возвращается. Объем свободных буферов в пуле ограничен, лишние буферы отдаются сборщику мусора.
+ */
+public class BufferPool {
+    public static final int MIN_CLASS_SIZE = 4 * 1024;
+    public static final int MAX_CLASS_SIZE = 4 * 1024 * 1024;
+    private static final long MAX_IDLE_BYTES = Long.getLong("server.bufferPoolBytes", 64L * 1024 * 1024);
+
+    private final Queue<ByteBuffer>[] classes;
+    private final AtomicLong idleBytes = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder leased = new LongAdder();
+
+    /**
+     * Создает пустой пул буферов.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BufferPool() {
+        int count = classIndex(MAX_CLASS_SIZE) + 1;
+        classes = new Queue[count];
+        for (int i = 0; i < count; i++) {
+            classes[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Выдает буфер емкостью не меньше указанной. Буфер очищен и готов к записи.
+     *
+     * @param minCapacity Минимальная требуемая емкость.
+     * @return Буфер из пула или новый буфер.
+     */
+    public ByteBuffer lease(int minCapacity) {
+        if (minCapacity > MAX_CLASS_SIZE) {
+            misses.increment();
+            return ByteBuffer.allocate(minCapacity);
+        }
+        int index = classIndex(minCapacity);
+        ByteBuffer buffer = classes[index].poll();
+        leased.increment();
+        if (buffer != null) {
+            hits.increment();
+            idleBytes.addAndGet(-buffer.capacity());
+            return buffer.clear();
+        }
+        misses.increment();
+        int size = MIN_CLASS_SIZE << index;
+        allocatedBytes.addAndGet(size);
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * Возвращает буфер в пул. Буферы, выделенные не пулом (в куче), игнорируются.
+     * После возврата вызывающая сторона не должна использовать буфер.
+     *
+     * @param buffer Возвращаемый буфер.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) return;
+        int capacity = buffer.capacity();
+        if (Integer.bitCount(capacity) != 1 || capacity < MIN_CLASS_SIZE || capacity > MAX_CLASS_SIZE) return;
+
+        leased.decrement();
+        if (idleBytes.addAndGet(capacity) > MAX_IDLE_BYTES) {
+            idleBytes.addAndGet(-capacity);
+            allocatedBytes.addAndGet(-capacity);
+            return;
+        }
+        classes[classIndex(capacity)].add(buffer);
+    }
+
+    /**
+     * Возвращает сводку метрик пула: попадания, промахи и занимаемую память.
+     *
+     * @return Строка со статистикой пула.
+     */
+    public String stats() {
+        return String.format("Пул буферов: попаданий %d, промахов %d, выдано сейчас %d, " +
+                        "свободно в пуле %d КБ, всего прямых буферов %d КБ",
+                hits.sum(), misses.sum(), leased.sum(), idleBytes.get() / 1024, allocatedBytes.get() / 1024);
+    }
+
+    /**
+     * Определяет номер класса размеров для указанной емкости.
+     *
+     * @param capacity Требуемая емкость.
+     * @return Номер класса: 0 соответствует {@link #MIN_CLASS_SIZE}.
+     */
+    private static int classIndex(int capacity) {
+        if (capacity <= MIN_CLASS_SIZE) return 0;
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+    }
+}
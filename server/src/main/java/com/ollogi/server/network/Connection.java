@@ -0,0 +1,331 @@
+package com.ollogi.server.network;
+
+import com.general.network.Codec;
+import com.general.network.Codecs;
+import com.general.network.Frame;
+import com.general.network.FrameDecoder;
+import com.ollogi.server.managers.SessionManager;
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Состояние одного клиентского соединения, общее для всех транспортных движков сервера.
+ * Хранит буфер накопления входящих кадров и очередь обработчиков, выполняемых по порядку; как читать и писать
+ * данные, решает конкретный движок: {@link SelectorConnection} работает с селектором, {@link AsyncConnection} —
+ * с асинхронными каналами NIO.2. Буферы берутся из общего {@link BufferPool} и возвращаются в него,
+ * как только становятся не нужны.
+ * <p>
+ * Соединение ограничивает нагрузку, которую создает один клиент: если у него слишком много запросов в обработке
+ * или слишком много байтов в памяти сервера (тела необработанных запросов и неотправленные ответы),
+ * чтение новых данных приостанавливается, и они копятся в буфере сокета ОС, пока нагрузка не спадет.
+ * Так же соединение ведет себя, когда заполнена его очередь обработчиков или очередь всего {@link WorkerPool}:
+ * уже полученные кадры остаются в буфере накопления и передаются на обработку, когда очередь освободится.
+ * <p>
+ * Момент последнего чтения или записи хранится в {@link #lastActivity}; по нему {@link IdleReaper}
+ * закрывает простаивающие соединения. Зависание записи отсчитывается отдельно, от {@link #lastWriteProgress}:
+ * чтение данных от клиента не означает, что он принимает ответы.
+ * <p>
+ * Потоковые ответы не занимают поток пула, пока клиент не принимает данные: формирование ответа откладывается
+ * через {@link #whenWritable(Runnable)} и продолжается в пуле, когда движок допишет очередь отправки.
+ */
+@Getter
+public abstract class Connection {
+    private static final Logger logger = LoggerFactory.getLogger("Connection");
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("server.maxInFlight", 64);
+
+    /**
+     * Максимальный объем данных соединения в памяти сервера; не больше этого может занимать и один запрос,
+     * в том числе после распаковки.
+     */
+    protected static final int MAX_BUFFERED_BYTES = Integer.getInteger("server.maxBufferedBytes", 16 * 1024 * 1024);
+
+    /**
+     * Максимальный объем неотправленных данных; при превышении клиент считается слишком медленным.
+     */
+    protected static final int MAX_OUTBOUND_BYTES = Integer.getInteger("server.maxOutboundBytes", 64 * 1024 * 1024);
+
+    /**
+     * Объем неотправленных данных, выше которого приостанавливается формирование потокового ответа.
+     */
+    protected static final int STREAM_HIGH_WATER = Integer.getInteger("server.streamHighWater", 1024 * 1024);
+
+    /**
+     * Время, в течение которого клиент может не принимать данные, прежде чем соединение будет закрыто.
+     */
+    protected static final long WRITE_STALL_MILLIS = Long.getLong("server.writeStallTimeoutMillis", 60_000L);
+
+    private final BufferPool bufferPool;
+    private final FrameDecoder frameDecoder;
+    private final WorkerPool workerPool;
+    private final WorkerPool.Lane lane;
+    private final Runnable onClose;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Object dispatchLock = new Object();
+    private final Runnable resumer = this::resume;
+    private final List<Runnable> writableWaiters = new ArrayList<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    /**
+     * Момент последней записи в канал или постановки данных в пустую очередь отправки; от него отсчитывается
+     * {@code server.writeStallTimeoutMillis}.
+     */
+    private volatile long lastWriteProgress = System.currentTimeMillis();
+
+    /**
+     * Возможности протокола, согласованные при рукопожатии (см. {@link com.general.network.Handshake}).
+     */
+    @Setter
+    private volatile int features = 0;
+
+    /**
+     * Формат сообщений, согласованный при рукопожатии.
+     */
+    @Setter
+    private volatile Codec codec = Codecs.JAVA;
+
+    /**
+     * Сессия пользователя, выполнившего вход через это соединение, или null.
+     */
+    @Setter
+    private volatile SessionManager.Session session;
+
+    /**
+     * Подписано ли соединение на изменения коллекции; такие соединения {@link IdleReaper} по простою не закрывает.
+     */
+    @Setter
+    private volatile boolean subscribed;
+
+    /**
+     * Создает состояние соединения.
+     *
+     * @param workerPool Пул, в котором выполняются обработчики запросов соединения.
+     * @param bufferPool Пул буферов для чтения и записи.
+     * @param onClose    Действие, выполняемое один раз при закрытии соединения.
+     */
+    protected Connection(WorkerPool workerPool, BufferPool bufferPool, Runnable onClose) {
+        this.onClose = onClose;
+        this.workerPool = workerPool;
+        this.lane = workerPool.newLane(MAX_IN_FLIGHT);
+        this.bufferPool = bufferPool;
+        this.frameDecoder = new FrameDecoder(MAX_BUFFERED_BYTES - Frame.HEADER_SIZE) {
+            @Override
+            protected ByteBuffer allocateBuffer(int capacity) {
+                return bufferPool.lease(capacity);
+            }
+
+            @Override
+            protected void releaseBuffer(ByteBuffer buffer) {
+                bufferPool.release(buffer);
+            }
+        };
+    }
+
+    /**
+     * Возвращает адрес клиента для журнала.
+     *
+     * @return Адрес клиента или null, если его не удалось получить.
+     */
+    public abstract SocketAddress getRemoteAddress();
+
+    /**
+     * Возвращает объем данных, поставленных в очередь отправки, но еще не записанных в канал.
+     *
+     * @return Количество неотправленных байтов.
+     */
+    public abstract long getOutboundBytes();
+
+    /**
+     * Ставит буферы в очередь отправки. Может вызываться из любого потока.
+     * Если объем неотправленных данных превышает допустимый, клиент считается слишком медленным
+     * и соединение закрывается. Отправленные буферы возвращаются в пул буферов.
+     *
+     * @param buffers Буферы для отправки, например заголовок и тело кадра.
+     */
+    public abstract void send(ByteBuffer... buffers);
+
+    /**
+     * Откладывает продолжение потокового ответа, пока объем неотправленных данных превышает
+     * {@code server.streamHighWater}. Поток пула при этом не ждет: продолжение передается в пул, когда движок
+     * допишет очередь отправки ниже этого порога или когда соединение закроется. Клиента, который не принимает
+     * данные дольше {@code server.writeStallTimeoutMillis}, отключает движок или {@link IdleReaper}.
+     *
+     * @param continuation Продолжение отправки; должно само проверить, не закрыто ли соединение.
+     * @return true, если продолжение отложено; false, если отправку можно продолжить сразу.
+     */
+    public boolean whenWritable(Runnable continuation) {
+        synchronized (writableWaiters) {
+            if (isClosed() || getOutboundBytes() <= STREAM_HIGH_WATER) return false;
+            writableWaiters.add(continuation);
+            return true;
+        }
+    }
+
+    /**
+     * Передает в пул отложенные продолжения потоковых ответов, если очередь отправки опустилась ниже
+     * {@code server.streamHighWater} или соединение закрыто. Вызывается движком после записи в канал.
+     */
+    protected void writableChanged() {
+        List<Runnable> ready;
+        synchronized (writableWaiters) {
+            if (writableWaiters.isEmpty() || !isClosed() && getOutboundBytes() > STREAM_HIGH_WATER) return;
+            ready = List.copyOf(writableWaiters);
+            writableWaiters.clear();
+        }
+        ready.forEach(workerPool::execute);
+    }
+
+    /**
+     * Отмечает, что по соединению только что были прочитаны или записаны данные.
+     */
+    public void touch() {
+        lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Отмечает, что клиент принял данные или что в пустую очередь отправки поставлены новые данные.
+     */
+    protected void writeProgressed() {
+        lastWriteProgress = System.currentTimeMillis();
+    }
+
+    /**
+     * Проверяет, согласована ли с клиентом возможность протокола.
+     *
+     * @param feature Возможность из {@link com.general.network.Handshake}.
+     * @return true, если возможность согласована.
+     */
+    public boolean supports(int feature) {
+        return (features & feature) != 0;
+    }
+
+    /**
+     * Проверяет, закрыто ли соединение.
+     *
+     * @return true, если соединение закрыто.
+     */
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Передает на обработку кадры, полностью полученные в буфер накопления, пока соединение не упирается в предел
+     * запросов в обработке или байтов в памяти сервера, а очередь соединения и пул принимают задачи. Остальные кадры
+     * остаются в буфере, пока нагрузка не спадет, а чтение приостанавливается
+     * (см. {@link #loadChanged()}). Вызывается движком после каждого чтения и самим соединением, когда нагрузка
+     * спадает; кадры передаются строго по порядку получения.
+     *
+     * @throws IOException если заголовок кадра содержит недопустимую длину.
+     */
+    public void dispatchBuffered() throws IOException {
+        synchronized (dispatchLock) {
+            while (!isClosed() && canDispatch()) {
+                Frame frame = frameDecoder.nextFrame();
+                if (frame == null) break;
+                dispatch(frame);
+            }
+        }
+        loadChanged();
+    }
+
+    /**
+     * Проверяет, можно ли передать на обработку еще один кадр. Если пул перегружен, соединение подписывается
+     * на уведомление о его освобождении.
+     *
+     * @return true, если кадр можно передать.
+     */
+    private boolean canDispatch() {
+        // Байты кадра уже учтены в буфере накопления: передача на обработку лишь переносит их в обрабатываемые,
+        // поэтому здесь они не считаются, иначе полученный целиком кадр мог бы никогда не начать обрабатываться
+        if (inFlight.get() >= MAX_IN_FLIGHT || lane.isFull()
+                || inFlightBytes.get() + getOutboundBytes() > MAX_BUFFERED_BYTES) return false;
+        return !(workerPool.isSaturated() && workerPool.whenAvailable(resumer));
+    }
+
+    /**
+     * Проверяет собственные пределы соединения: запросы в обработке, очередь обработчиков и байты в памяти сервера —
+     * полученные, но еще не извлеченные из буфера накопления, тела запросов в обработке и неотправленные ответы.
+     *
+     * @return true, если новых данных соединения больше не принимается.
+     */
+    private boolean isAtCapacity() {
+        return inFlight.get() >= MAX_IN_FLIGHT || lane.isFull()
+                || inFlightBytes.get() + getOutboundBytes() + frameDecoder.buffered() > MAX_BUFFERED_BYTES;
+    }
+
+    /**
+     * Передает на обработку кадры, отложенные из-за нагрузки, и возобновляет чтение. Вызывается после завершения
+     * каждого запроса, при освобождении пула и движком, когда уходят неотправленные данные.
+     */
+    protected void resume() {
+        try {
+            dispatchBuffered();
+        } catch (IOException e) {
+            logger.error("Ошибка чтения данных: {}", e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Передает полученный запрос на обработку в пул через очередь соединения, поэтому обработчики начинаются
+     * строго в порядке запросов. Какие из них могут завершаться вне очереди, решает {@link Handler}.
+     *
+     * @param frame Кадр с сериализованным запросом.
+     */
+    private void dispatch(Frame frame) {
+        int size = frame.getBody().length;
+        inFlight.incrementAndGet();
+        inFlightBytes.addAndGet(size);
+        loadChanged();
+
+        lane.execute(new Handler(this, frame, () -> {
+            inFlight.decrementAndGet();
+            inFlightBytes.addAndGet(-size);
+            resume();
+        }));
+    }
+
+    /**
+     * Проверяет, перегружено ли соединение запросами в обработке или неотправленными данными.
+     *
+     * @return true, если чтение новых запросов нужно приостановить.
+     */
+    protected boolean isOverloaded() {
+        return isAtCapacity() || workerPool.isSaturated();
+    }
+
+    /**
+     * Вызывается после каждого изменения количества запросов в обработке и объема неотправленных данных,
+     * чтобы движок приостановил или возобновил чтение (см. {@link #isOverloaded()}).
+     */
+    protected abstract void loadChanged();
+
+    /**
+     * Закрывает канал и освобождает исходящие буферы. Вызывается один раз из {@link #close()}.
+     */
+    protected abstract void closeChannel();
+
+    /**
+     * Закрывает соединение и возвращает в пул буферы входящих и исходящих данных.
+     */
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        closeChannel();
+        frameDecoder.close();
+        writableChanged();
+        onClose.run();
+    }
+}
@@ -1,40 +1,72 @@
 package com.ollogi.server.network;
 
+import com.general.command.Cacheable;
+import com.general.command.ReadOnly;
 import com.general.managers.CommandManager;
+import com.general.network.ChangeEvent;
+import com.general.network.Codec;
+import com.general.network.Codecs;
+import com.general.network.Compression;
+import com.general.network.Frame;
+import com.general.network.Handshake;
 import com.general.network.Request;
 import com.general.network.Response;
+import com.general.network.SessionToken;
+import com.general.network.StreamedResponse;
+import com.ollogi.server.managers.SessionManager;
 import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectInputStream;
-import java.nio.channels.SocketChannel;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * Обрабатывает входящие запросы от клиентов в отдельном потоке.
+ * Обрабатывает входящие запросы от клиентов в потоке пула обработчиков.
  * Этот класс читает запрос, обрабатывает его и отправляет ответ.
+ * <p>
+ * Обработчик выполняется в очереди соединения, поэтому к его началу все предыдущие запросы соединения уже выполнены.
+ * Запрос с идентификатором к команде {@link ReadOnly} дальше выполняется в пуле без упорядочивания и не задерживает
+ * следующие запросы: клиент сопоставит ответ по идентификатору, а коллекцию команда не меняет. Остальные запросы,
+ * в том числе изменяющие коллекцию, сохранение и выход, выполняются строго по порядку.
+ * <p>
+ * Потоковый ответ, который клиент не успевает принимать, дописывается уже без обработчика (см.
+ * {@link TCPWriter#sendStream}), и поток пула не ждет клиента. Запрос считается выполненным, когда отправлена
+ * последняя часть ответа. Следующие запросы соединения при этом не ждут: без идентификатора запросы присылает
+ * только клиент, который дожидается ответа целиком, а запросы с идентификатором к таким командам и так
+ * выполняются без упорядочивания.
  */
 public class Handler implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger("Handler");
     private static final Request SAVE_REQUEST = new Request("save", null);
+    private static final int SUPPORTED_FEATURES = Handshake.COMPRESSION | Handshake.STREAMING;
+    private static final int[] CODECS = Codecs.parse(System.getProperty("server.codecs", "binary,json,java"));
 
     @Setter
     private static CommandManager commandManager;
+    @Setter
+    private static SessionManager sessionManager = new SessionManager();
+    @Setter
+    private static Subscriptions subscriptions;
+    @Setter
+    private static ResponseCache responseCache;
 
-    private final SocketChannel clientSocketChannel;
-    private final ByteArrayOutputStream byteArrayOutputStream;
+    private final Connection connection;
+    private final Frame frame;
+    private final Runnable onComplete;
 
     /**
      * Конструктор для создания нового объекта Handler.
      *
-     * @param clientSocketChannel   Канал сокета, подключенный к клиенту.
-     * @param byteArrayOutputStream Поток вывода, содержащий запрос клиента.
+     * @param connection Соединение, от которого получен запрос.
+     * @param frame      Кадр, содержащий сериализованный запрос клиента.
+     * @param onComplete Действие, выполняемое один раз после отправки ответа, в том числе при ошибке.
      */
-    public Handler(SocketChannel clientSocketChannel, ByteArrayOutputStream byteArrayOutputStream) {
-        this.clientSocketChannel = clientSocketChannel;
-        this.byteArrayOutputStream = byteArrayOutputStream;
+    public Handler(Connection connection, Frame frame, Runnable onComplete) {
+        this.connection = connection;
+        this.frame = frame;
+        this.onComplete = onComplete;
     }
 
     /**
@@ -43,43 +75,226 @@ public class Handler implements Runnable {
      */
     @Override
     public void run() {
+        boolean handedOver = false;
         try {
-            byte[] requestBytes = byteArrayOutputStream.toByteArray();
-            try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(requestBytes))) {
-                Request request = (Request) objectInputStream.readObject();
-                if ("exit".equals(request.getCommand())) {
-                    logger.info("Клиент {} завершил работу", clientSocketChannel.getRemoteAddress());
-                    clientSocketChannel.close();
-                    if(commandManager.handle(SAVE_REQUEST).isSuccess())
-                        logger.info("Коллекция сохранена");
-                    return;
-                }
-                handleRequest(request);
+            if (frame.isCompressed() && !connection.supports(Handshake.COMPRESSION)) {
+                logger.warn("Клиент {} прислал сжатый кадр, не согласовав сжатие, соединение закрывается",
+                        connection.getRemoteAddress());
+                connection.close();
+                return;
+            }
+            Request request = (Request) connection.getCodec().decode(
+                    Compression.body(frame, Connection.MAX_BUFFERED_BYTES));
+            request.setRequestId(frame.getRequestId());
+            if ("exit".equals(request.getCommand())) {
+                logger.info("Клиент {} завершил работу", connection.getRemoteAddress());
+                if (connection.getSession() != null) sessionManager.logout(connection.getSession());
+                connection.close();
+                if(commandManager.handle(SAVE_REQUEST).isSuccess())
+                    logger.info("Коллекция сохранена");
+                return;
+            }
+            if (Handshake.COMMAND.equals(request.getCommand())) {
+                handleHandshake(request);
+                return;
+            }
+            if (SessionToken.LOGIN_COMMAND.equals(request.getCommand())
+                    || SessionToken.REGISTER_COMMAND.equals(request.getCommand())) {
+                handleLogin(request);
+                return;
+            }
+            if (ChangeEvent.SUBSCRIBE_COMMAND.equals(request.getCommand())
+                    || ChangeEvent.UNSUBSCRIBE_COMMAND.equals(request.getCommand())) {
+                handleSubscription(request);
+                return;
+            }
+            // Пользователь определяется только сессией соединения, а не данными, присланными клиентом
+            SessionManager.Session session = connection.getSession();
+            request.setUserId(session == null ? null : session.userId());
+            request.setLogin(null);
+            request.setPassword(null);
+            handedOver = true;
+            if (request.getRequestId() != 0 && commandManager.getCommand(request.getCommand()) instanceof ReadOnly) {
+                connection.getWorkerPool().execute(() -> process(request));
+            } else {
+                process(request);
             }
         } catch (Exception e) {
             logger.error("Ошибка обработки запроса: {}", e.getMessage());
-            sendErrorResponse(clientSocketChannel);
+            sendErrorResponse();
+        } finally {
+            if (!handedOver) onComplete.run();
+        }
+    }
+
+    /**
+     * Выполняет запрос к команде; при ошибке отправляет ответ об ошибке. Действие завершения выполняется
+     * после отправки ответа, в том числе отложенной.
+     *
+     * @param request Запрос клиента.
+     */
+    private void process(Request request) {
+        try {
+            handleRequest(request);
+        } catch (RuntimeException e) {
+            logger.error("Ошибка обработки запроса: {}", e.getMessage());
+            sendErrorResponse();
+            onComplete.run();
         }
     }
 
     /**
      * Обрабатывает входящий запрос, передавая его в CommandManager.
-     * Отправляет обработанный ответ обратно клиенту.
+     * Отправляет обработанный ответ обратно клиенту. Если клиент принимает потоковые ответы, в CommandManager
+     * только подготавливается результат, а строки формируются и отправляются уже без блокировки коллекции.
+     * Ответы команд {@link Cacheable} без аргументов берутся из {@link ResponseCache}, пока не изменилась версия
+     * их данных, а при промахе сохраняются в нем. Если метод вернул управление, действие завершения обработчика
+     * выполнится после отправки ответа; если выбросил исключение — не выполнялось.
      *
      * @param request Объект запроса, полученный от клиента.
      */
     private void handleRequest(Request request) {
-        Response response = commandManager.handle(request);
-        TCPWriter.sendResponse(clientSocketChannel, response);
+        boolean streaming = connection.supports(Handshake.STREAMING);
+        Cacheable cacheable = responseCache != null && request.getData() == null
+                && commandManager.getCommand(request.getCommand()) instanceof Cacheable command ? command : null;
+        ResponseCache.Key key = null;
+        ResponseCache.Recorder recorder = null;
+        long version = 0;
+        if (cacheable != null) {
+            key = new ResponseCache.Key(request.getCommand(), connection.getCodec().getId(), streaming,
+                    connection.supports(Handshake.COMPRESSION));
+            List<ResponseCache.CachedFrame> cached = responseCache.get(key, cacheable.version());
+            if (cached != null) {
+                ResponseCache.send(connection, cached, request.getRequestId(), onComplete);
+                return;
+            }
+            recorder = new ResponseCache.Recorder();
+        }
+
+        // Версия читается до выполнения: ответ, вычисленный по более новым данным, просто не будет найден в кэше
+        if (cacheable != null) version = cacheable.version();
+        if (streaming) {
+            StreamedResponse streamed = commandManager.stream(request);
+            ResponseCache.Key cacheKey = key;
+            ResponseCache.Recorder cacheRecorder = recorder;
+            long cacheVersion = version;
+            TCPWriter.sendStream(connection, streamed, request.getRequestId(), request.getCommand(), recorder, sent -> {
+                try {
+                    if (cacheRecorder != null && sent) responseCache.put(cacheKey, cacheVersion, cacheRecorder);
+                } finally {
+                    onComplete.run();
+                }
+            });
+        } else {
+            Response response = commandManager.handle(request);
+            response.setRequestId(request.getRequestId());
+            boolean sent = TCPWriter.sendResponse(connection, response, request.getCommand(), recorder);
+            if (recorder != null && sent) responseCache.put(key, version, recorder);
+            onComplete.run();
+        }
     }
 
     /**
-     * Отправляет клиенту ответ об ошибке, указывая на то, что запрос был недействительным.
+     * Согласует с клиентом возможности протокола: запоминает в соединении те из предложенных клиентом
+     * возможностей, которые поддерживает сервер, и сообщает их клиенту. Формат сообщений выбирается первым
+     * из предложенных клиентом форматов, разрешенных свойством {@code server.codecs}.
+     *
+     * @param request Запрос рукопожатия с возможностями клиента.
+     */
+    private void handleHandshake(Request request) {
+        Handshake offer = request.getData() instanceof Handshake handshake ? handshake : new Handshake(0);
+        int agreed = offer.getFeatures() & SUPPORTED_FEATURES;
+        Codec codec = chooseCodec(offer.getCodecs());
+        // Ответ на рукопожатие сериализуется в прежнем формате и без новых возможностей, потому что клиент еще
+        // не знает о них, а в очередь отправки ставится только после их включения: получив его, клиент сразу
+        // начнет ими пользоваться
+        Response response = new Response(true, "Возможности согласованы",
+                new Handshake(agreed, new int[]{codec.getId()}));
+        response.setRequestId(request.getRequestId());
+        ByteBuffer frame = TCPWriter.frameResponse(connection, response, request.getCommand());
+        connection.setCodec(codec);
+        connection.setFeatures(agreed);
+        if (frame != null) connection.send(frame);
+        logger.debug("Согласованы возможности {} и формат {} с клиентом {}", agreed, codec.getName(),
+                connection.getRemoteAddress());
+    }
+
+    /**
+     * Выбирает формат сообщений из предложенных клиентом.
+     *
+     * @param offered Коды форматов в порядке предпочтения клиента или null.
+     * @return Первый предложенный формат, разрешенный на сервере, или {@link Codecs#JAVA}.
+     */
+    private static Codec chooseCodec(int[] offered) {
+        if (offered == null) return Codecs.JAVA;
+        for (int id : offered) {
+            if (Arrays.stream(CODECS).anyMatch(allowed -> allowed == id)) return Codecs.byId(id);
+        }
+        return Codecs.JAVA;
+    }
+
+    /**
+     * Регистрирует пользователя, выполняет вход по логину и паролю или восстанавливает сессию по токену
+     * и привязывает сессию к соединению. Клиент получает токен сессии, по которому сможет восстановить ее
+     * после переподключения.
+     *
+     * @param request Запрос регистрации или входа.
+     */
+    private void handleLogin(Request request) {
+        boolean register = SessionToken.REGISTER_COMMAND.equals(request.getCommand());
+        boolean resume = !register && request.getData() instanceof SessionToken;
+        SessionManager.Session session;
+        if (register) {
+            session = sessionManager.register(request.getLogin(), request.getPassword());
+        } else if (resume) {
+            session = sessionManager.resume(((SessionToken) request.getData()).getToken());
+        } else {
+            session = sessionManager.login(request.getLogin(), request.getPassword());
+        }
+
+        Response response;
+        if (session == null) {
+            response = new Response(false, register ? "Логин пуст или уже занят"
+                    : resume ? "Сессия не найдена или истекла" : "Неверный логин или пароль");
+        } else {
+            connection.setSession(session);
+            logger.info("Пользователь {} вошел с {}", session.login(), connection.getRemoteAddress());
+            response = new Response(true, (register ? "Пользователь зарегистрирован, вход выполнен: " : "Вход выполнен: ") + session.login(),
+                    new SessionToken(session.token(), session.userId()));
+        }
+        response.setRequestId(request.getRequestId());
+        TCPWriter.sendResponse(connection, response, request.getCommand());
+    }
+
+    /**
+     * Подписывает соединение на изменения коллекции или отменяет подписку. Подписка оформляется до отправки ответа,
+     * поэтому клиент может получить первые события раньше ответа на запрос подписки, но не пропустит их.
      *
-     * @param channel Канал сокета, в который отправляется ответ.
+     * @param request Запрос подписки или отмены подписки.
+     */
+    private void handleSubscription(Request request) {
+        Response response;
+        if (subscriptions == null) {
+            response = new Response(false, "Подписка на изменения не поддерживается");
+        } else if (ChangeEvent.SUBSCRIBE_COMMAND.equals(request.getCommand())) {
+            subscriptions.subscribe(connection);
+            logger.info("Клиент {} подписался на изменения коллекции", connection.getRemoteAddress());
+            response = new Response(true, "Подписка на изменения коллекции оформлена");
+        } else {
+            response = subscriptions.unsubscribe(connection)
+                    ? new Response(true, "Подписка на изменения коллекции отменена")
+                    : new Response(false, "Подписка не была оформлена");
+        }
+        response.setRequestId(request.getRequestId());
+        TCPWriter.sendResponse(connection, response, request.getCommand());
+    }
+
+    /**
+     * Отправляет клиенту ответ об ошибке, указывая на то, что запрос был недействительным.
      */
-    private void sendErrorResponse(SocketChannel channel) {
+    private void sendErrorResponse() {
         Response response = new Response(false, "Недействительный запрос");
-        TCPWriter.sendResponse(channel, response);
+        response.setRequestId(frame.getRequestId());
+        TCPWriter.sendResponse(connection, response, null);
     }
 }
@@ -0,0 +1,99 @@
+package com.ollogi.server.network;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Закрывает соединения, по которым дольше заданного времени не было ни чтения, ни записи.
+ * К таким относятся и полуоткрытые соединения: клиент исчез, а ответ так и не удается дописать.
+ * Соединения с запросами в обработке и соединения, подписанные на изменения коллекции, по простою не закрываются:
+ * подписчик может долго только ждать событий. Но любое соединение закрывается, если клиент дольше
+ * {@code server.writeStallTimeoutMillis} не принимает неотправленные данные, даже продолжая присылать запросы.
+ * Для каждого соединения ставится один таймер в {@link TimingWheel}; при срабатывании таймер либо закрывает
+ * соединение, либо переставляется на ближайший из оставшихся сроков. Экземпляр используется одним потоком:
+ * потоком селектора или потоком таймера.
+ */
+public class IdleReaper {
+    private static final Logger logger = LoggerFactory.getLogger("IdleReaper");
+    private static final int SLOT_COUNT = 64;
+
+    private final long idleTimeoutMillis;
+    private final long writeStallMillis = Connection.WRITE_STALL_MILLIS;
+    private final long periodMillis;
+    private final TimingWheel<Connection> wheel;
+    private final LongAdder reaped;
+
+    /**
+     * Создает сборщик простаивающих соединений.
+     *
+     * @param idleTimeoutMillis Допустимое время простоя в миллисекундах; 0 — не закрывать соединения по простою.
+     * @param reaped            Общий счетчик закрытых по простою соединений.
+     */
+    public IdleReaper(long idleTimeoutMillis, LongAdder reaped) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.periodMillis = idleTimeoutMillis > 0 && writeStallMillis > 0
+                ? Math.min(idleTimeoutMillis, writeStallMillis) : Math.max(idleTimeoutMillis, writeStallMillis);
+        this.wheel = new TimingWheel<>(SLOT_COUNT, Math.max(periodMillis / (SLOT_COUNT / 2), 10),
+                System.currentTimeMillis());
+        this.reaped = reaped;
+    }
+
+    /**
+     * Возвращает, сколько может ждать селектор, чтобы не пропустить очередной тик.
+     *
+     * @return Время ожидания в миллисекундах; 0 — ждать без ограничения.
+     */
+    public long selectTimeout() {
+        return periodMillis > 0 ? wheel.getTickMillis() : 0;
+    }
+
+    /**
+     * Начинает следить за соединением.
+     *
+     * @param connection Новое соединение.
+     */
+    public void register(Connection connection) {
+        if (periodMillis > 0) wheel.schedule(connection, periodMillis);
+    }
+
+    /**
+     * Поворачивает колесо и закрывает соединения, простаивающие или не принимающие данные дольше допустимого.
+     */
+    public void expire() {
+        if (periodMillis > 0) wheel.advance(System.currentTimeMillis(), this::check);
+    }
+
+    /**
+     * Проверяет соединение, таймер которого сработал.
+     *
+     * @param connection Соединение.
+     */
+    private void check(Connection connection) {
+        if (connection.isClosed()) return;
+        long now = System.currentTimeMillis();
+        long delay = periodMillis;
+        if (writeStallMillis > 0 && connection.getOutboundBytes() > 0) {
+            long stallMillis = now - connection.getLastWriteProgress();
+            if (stallMillis >= writeStallMillis) {
+                logger.warn("Клиент {} не принимает данные дольше {} мс, соединение закрывается",
+                        connection.getRemoteAddress(), writeStallMillis);
+                connection.close();
+                return;
+            }
+            delay = Math.min(delay, writeStallMillis - stallMillis);
+        }
+        if (idleTimeoutMillis > 0 && connection.getInFlight().get() == 0 && !connection.isSubscribed()) {
+            long idleMillis = now - connection.getLastActivity();
+            if (idleMillis >= idleTimeoutMillis) {
+                logger.info("Соединение закрыто по простою: {}", connection.getRemoteAddress());
+                connection.close();
+                reaped.increment();
+                return;
+            }
+            delay = Math.min(delay, idleTimeoutMillis - idleMillis);
+        }
+        wheel.schedule(connection, delay);
+    }
+}
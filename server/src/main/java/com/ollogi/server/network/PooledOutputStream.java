@@ -0,0 +1,79 @@
+package com.ollogi.server.network;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Поток вывода, записывающий данные в буфер из {@link BufferPool}.
+ * При нехватке места буфер заменяется буфером следующего класса размеров, а прежний возвращается в пул.
+ * Позволяет сериализовать ответ сразу в прямой буфер без промежуточных массивов.
+ */
+public class PooledOutputStream extends OutputStream {
+    private final BufferPool bufferPool;
+    private ByteBuffer buffer;
+
+    /**
+     * Создает поток вывода.
+     *
+     * @param bufferPool Пул, из которого берутся буферы.
+     * @param reserved   Количество байтов в начале буфера, оставляемых под заголовок.
+     */
+    public PooledOutputStream(BufferPool bufferPool, int reserved) {
+        this.bufferPool = bufferPool;
+        this.buffer = bufferPool.lease(BufferPool.MIN_CLASS_SIZE);
+        this.buffer.position(reserved);
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        buffer.put(bytes, offset, length);
+    }
+
+    /**
+     * Возвращает записанные данные, начиная с зарезервированной области. Буфер переводится в режим чтения,
+     * и ответственность за его возврат в пул переходит к вызывающей стороне.
+     *
+     * @return Буфер с данными.
+     */
+    public ByteBuffer toBuffer() {
+        ByteBuffer result = buffer.flip();
+        buffer = null;
+        return result;
+    }
+
+    /**
+     * Возвращает буфер в пул, если он не был передан вызывающей стороне.
+     */
+    public void discard() {
+        bufferPool.release(buffer);
+        buffer = null;
+    }
+
+    /**
+     * Закрытие потока не освобождает буфер: для этого используются {@link #toBuffer()} и {@link #discard()}.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Обеспечивает наличие места для записи указанного количества байтов.
+     *
+     * @param length Количество байтов для записи.
+     */
+    private void ensureCapacity(int length) {
+        if (buffer.remaining() >= length) return;
+        ByteBuffer grown = bufferPool.lease(Math.max(buffer.position() + length, buffer.capacity() * 2));
+        buffer.flip();
+        grown.put(buffer);
+        bufferPool.release(buffer);
+        buffer = grown;
+    }
+}
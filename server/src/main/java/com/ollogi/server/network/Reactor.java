@@ -0,0 +1,87 @@
+package com.ollogi.server.network;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Реактор — поток с собственным селектором, обслуживающий ввод-вывод закрепленных за ним соединений.
+ * Принятые соединения передаются реактору из потока-акцептора через {@link #register(SelectorConnection)}
+ * и регистрируются в селекторе уже в потоке реактора.
+ * Реактор просыпается не реже одного тика своего {@link IdleReaper} и закрывает простаивающие соединения.
+ */
+public class Reactor implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger("Reactor");
+    private final Selector selector;
+    private final Queue<SelectorConnection> pendingConnections = new ConcurrentLinkedQueue<>();
+    private final IdleReaper idleReaper;
+
+    /**
+     * Создает реактор с новым селектором.
+     *
+     * @param idleReaper Сборщик простаивающих соединений этого реактора.
+     * @throws IOException если селектор не удалось открыть
+     */
+    public Reactor(IdleReaper idleReaper) throws IOException {
+        this.selector = Selector.open();
+        this.idleReaper = idleReaper;
+    }
+
+    /**
+     * Передает реактору новое соединение. Может вызываться из любого потока.
+     *
+     * @param connection Состояние принятого соединения.
+     */
+    public void register(SelectorConnection connection) {
+        pendingConnections.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Основной цикл реактора: ожидает события на своих каналах и обрабатывает чтение и отложенную запись.
+     */
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                selector.select(idleReaper.selectTimeout());
+            } catch (IOException e) {
+                logger.error("Ошибка выбора потока: {}", e.getMessage());
+                continue;
+            }
+            registerPendingChannels();
+            for (SelectionKey key : selector.selectedKeys()) {
+                if (key.isValid() && key.isReadable()) {
+                    new TCPReader(key).run();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    ((SelectorConnection) key.attachment()).flush();
+                }
+            }
+            selector.selectedKeys().clear();
+            idleReaper.expire();
+        }
+    }
+
+    /**
+     * Регистрирует в селекторе соединения, переданные реактору с момента предыдущей итерации.
+     */
+    private void registerPendingChannels() {
+        SelectorConnection connection;
+        while ((connection = pendingConnections.poll()) != null) {
+            try {
+                connection.attach(connection.getChannel().register(selector, SelectionKey.OP_READ, connection));
+                idleReaper.register(connection);
+            } catch (ClosedChannelException e) {
+                logger.error("Канал закрыт: {}", e.getMessage());
+                connection.close();
+            }
+        }
+    }
+}
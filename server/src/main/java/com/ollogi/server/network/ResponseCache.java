@@ -0,0 +1,170 @@
+package com.ollogi.server.network;
+
+import com.general.network.Frame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сохраненные сериализованные ответы команд {@link com.general.command.Cacheable}.
+ * Ответ хранится в виде готовых тел кадров — уже в формате и со сжатием соединения, для которого он был получен, —
+ * поэтому при попадании в кэш команда не выполняется и ответ не сериализуется заново: тела только копируются
+ * в буферы с заголовком нового запроса. Ответ действителен, пока не изменилась версия данных команды.
+ * Общий объем сохраненных тел ограничен {@code server.responseCacheBytes}; при нехватке места сначала
+ * вытесняются устаревшие ответы, а если и этого мало, новый ответ не сохраняется.
+ */
+public class ResponseCache {
+    private static final long MAX_BYTES = Long.getLong("server.responseCacheBytes", 16 * 1024 * 1024L);
+
+    private final Map<Key, Entry> entries = new HashMap<>();
+    private long totalBytes = 0;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Ключ сохраненного ответа: от формата сообщений, потоковой передачи и сжатия зависят байты ответа.
+     *
+     * @param command    Имя команды.
+     * @param codec      Код формата сообщений соединения.
+     * @param streaming  Передается ли ответ частями.
+     * @param compressed Согласовано ли с клиентом сжатие.
+     */
+    public record Key(String command, int codec, boolean streaming, boolean compressed) {
+    }
+
+    /**
+     * Тело одного кадра сохраненного ответа.
+     *
+     * @param body       Тело кадра без заголовка.
+     * @param compressed Сжато ли тело.
+     */
+    public record CachedFrame(byte[] body, boolean compressed) {
+    }
+
+    private record Entry(long version, List<CachedFrame> frames, long bytes) {
+    }
+
+    /**
+     * Копирует тела отправляемых кадров ответа, чтобы затем сохранить их в кэше.
+     * Если ответ больше, чем может поместиться в кэш, копирование прекращается.
+     */
+    public static class Recorder {
+        private final List<CachedFrame> frames = new ArrayList<>();
+        private long bytes = 0;
+        private boolean overflowed = false;
+
+        /**
+         * Сохраняет копию тела кадра.
+         *
+         * @param frame      Кадр в режиме чтения, тело которого начинается после {@link Frame#HEADER_SIZE} байтов.
+         * @param compressed Сжато ли тело.
+         */
+        public void record(ByteBuffer frame, boolean compressed) {
+            if (overflowed) return;
+            int size = frame.limit() - Frame.HEADER_SIZE;
+            if (bytes + size > MAX_BYTES) {
+                overflowed = true;
+                frames.clear();
+                return;
+            }
+            byte[] body = new byte[size];
+            frame.get(Frame.HEADER_SIZE, body);
+            frames.add(new CachedFrame(body, compressed));
+            bytes += size;
+        }
+    }
+
+    /**
+     * Возвращает сохраненный ответ, если он получен для той же версии данных.
+     *
+     * @param key     Ключ ответа.
+     * @param version Текущая версия данных команды.
+     * @return Тела кадров ответа или null, если подходящего ответа нет.
+     */
+    public synchronized List<CachedFrame> get(Key key, long version) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.version() != version) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.frames();
+    }
+
+    /**
+     * Сохраняет ответ. Более старая версия не заменяет уже сохраненную более новую.
+     *
+     * @param key      Ключ ответа.
+     * @param version  Версия данных, для которой получен ответ.
+     * @param recorder Тела кадров ответа в порядке отправки.
+     */
+    public synchronized void put(Key key, long version, Recorder recorder) {
+        if (recorder.overflowed) return;
+        long bytes = recorder.bytes;
+        Entry previous = entries.get(key);
+        if (previous != null && previous.version() > version) return;
+        if (previous != null) remove(key);
+        if (totalBytes + bytes > MAX_BYTES) {
+            // Устаревшие ответы уже не пригодятся: у данных их команды новая версия или ответ на нее будет сохранен заново
+            entries.entrySet().removeIf(stale -> stale.getValue().version() < version && release(stale.getValue()));
+        }
+        if (totalBytes + bytes > MAX_BYTES) return;
+        entries.put(key, new Entry(version, List.copyOf(recorder.frames), bytes));
+        totalBytes += bytes;
+    }
+
+    /**
+     * Отправляет сохраненный ответ с идентификатором нового запроса. Если клиент не успевает принимать данные,
+     * оставшиеся части потокового ответа отправляются в потоке пула, когда освободится очередь отправки
+     * (см. {@link Connection#whenWritable(Runnable)}).
+     *
+     * @param connection Соединение с клиентом.
+     * @param frames     Тела кадров ответа.
+     * @param requestId  Идентификатор запроса.
+     * @param onSent     Действие, выполняемое один раз после отправки последней части или закрытия соединения.
+     */
+    public static void send(Connection connection, List<CachedFrame> frames, int requestId, Runnable onSent) {
+        new Runnable() {
+            private int next = 0;
+
+            @Override
+            public void run() {
+                while (next < frames.size() && !connection.isClosed()) {
+                    CachedFrame cached = frames.get(next++);
+                    ByteBuffer frame = connection.getBufferPool().lease(Frame.HEADER_SIZE + cached.body().length);
+                    frame.position(Frame.HEADER_SIZE);
+                    frame.put(cached.body());
+                    frame.flip();
+                    Frame.putHeader(frame, requestId, cached.compressed());
+                    connection.send(frame);
+                    if (next < frames.size() && connection.whenWritable(this)) return;
+                }
+                onSent.run();
+            }
+        }.run();
+    }
+
+    /**
+     * Возвращает сводку метрик кэша.
+     *
+     * @return Строка со статистикой кэша.
+     */
+    public synchronized String stats() {
+        return String.format("Кэш ответов: попаданий %d, промахов %d, ответов %d, объем %d КБ",
+                hits.sum(), misses.sum(), entries.size(), totalBytes / 1024);
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) totalBytes -= entry.bytes();
+    }
+
+    private boolean release(Entry entry) {
+        totalBytes -= entry.bytes();
+        return true;
+    }
+}
@@ -0,0 +1,167 @@
+package com.ollogi.server.network;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Соединение движка на селекторах, прикрепляемое к ключу выбора своего канала.
+ * Исходящие данные записываются без ожидания: то, что канал не принял сразу, остается в очереди до тех пор,
+ * пока селектор не сообщит о готовности канала к записи (OP_WRITE). При перегрузке соединения
+ * снимается интерес к чтению (OP_READ).
+ */
+@Getter
+public class SelectorConnection extends Connection {
+    private static final Logger logger = LoggerFactory.getLogger("SelectorConnection");
+    private static final int MAX_GATHER_BUFFERS = 64;
+
+    private final SocketChannel channel;
+    private volatile SelectionKey key;
+
+    private final Deque<ByteBuffer> outbound = new ArrayDeque<>();
+    private volatile long outboundBytes = 0;
+
+    /**
+     * Создает состояние соединения.
+     *
+     * @param channel    Канал сокета клиента.
+     * @param workerPool Пул, в котором выполняются обработчики запросов соединения.
+     * @param bufferPool Пул буферов для чтения и записи.
+     * @param onClose    Действие, выполняемое один раз при закрытии соединения.
+     */
+    public SelectorConnection(SocketChannel channel, WorkerPool workerPool, BufferPool bufferPool, Runnable onClose) {
+        super(workerPool, bufferPool, onClose);
+        this.channel = channel;
+    }
+
+    /**
+     * Связывает соединение с ключом выбора, полученным при регистрации канала в селекторе.
+     *
+     * @param key Ключ выбора канала.
+     */
+    public void attach(SelectionKey key) {
+        this.key = key;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        try {
+            return channel.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ставит буферы в очередь отправки и сразу пытается их записать. Может вызываться из любого потока.
+     * Если канал принял не все данные, остаток ждет события OP_WRITE.
+     *
+     * @param buffers Буферы для отправки, например заголовок и тело кадра.
+     */
+    @Override
+    public void send(ByteBuffer... buffers) {
+        long size = 0;
+        for (ByteBuffer buffer : buffers) size += buffer.remaining();
+
+        synchronized (outbound) {
+            if (outboundBytes + size > MAX_OUTBOUND_BYTES) {
+                logger.warn("Превышен объем неотправленных данных ({} байт), соединение закрывается", outboundBytes + size);
+                for (ByteBuffer buffer : buffers) getBufferPool().release(buffer);
+                close();
+                return;
+            }
+            boolean idle = outbound.isEmpty();
+            for (ByteBuffer buffer : buffers) outbound.add(buffer);
+            outboundBytes += size;
+            if (idle) {
+                writeProgressed();
+                flush();
+                if (!outbound.isEmpty() && key != null && key.isValid()) {
+                    key.interestOpsOr(SelectionKey.OP_WRITE);
+                    key.selector().wakeup();
+                }
+            }
+        }
+    }
+
+    /**
+     * Записывает в канал накопленные исходящие буферы одной gathering-записью.
+     * Вызывается реактором по событию OP_WRITE; когда очередь опустела, интерес к записи снимается.
+     * Освободившееся место позволяет передать на обработку запросы, отложенные из-за объема данных в памяти,
+     * и продолжить отложенные потоковые ответы.
+     */
+    public void flush() {
+        synchronized (outbound) {
+            try {
+                while (!outbound.isEmpty()) {
+                    ByteBuffer[] buffers = outbound.stream().limit(MAX_GATHER_BUFFERS).toArray(ByteBuffer[]::new);
+                    long written = channel.write(buffers);
+                    outboundBytes -= written;
+                    if (written > 0) {
+                        touch();
+                        writeProgressed();
+                    }
+                    while (!outbound.isEmpty() && !outbound.peekFirst().hasRemaining()) {
+                        getBufferPool().release(outbound.pollFirst());
+                    }
+                    if (written == 0) break;
+                }
+            } catch (IOException e) {
+                logger.error("Ошибка отправки ответа: {}", e.getMessage());
+                close();
+                return;
+            }
+            if (outbound.isEmpty() && key != null && key.isValid()) {
+                key.interestOpsAnd(~SelectionKey.OP_WRITE);
+            }
+        }
+        resume();
+        writableChanged();
+    }
+
+    /**
+     * Снимает интерес к чтению, если соединение перегружено, и возвращает его, когда нагрузка спала.
+     */
+    @Override
+    protected synchronized void loadChanged() {
+        SelectionKey key = this.key;
+        if (key == null || !key.isValid()) return;
+
+        boolean overloaded = isOverloaded();
+        try {
+            boolean reading = (key.interestOps() & SelectionKey.OP_READ) != 0;
+            if (overloaded && reading) {
+                key.interestOpsAnd(~SelectionKey.OP_READ);
+            } else if (!overloaded && !reading) {
+                key.interestOpsOr(SelectionKey.OP_READ);
+                key.selector().wakeup();
+            }
+        } catch (CancelledKeyException ignored) {
+            // Соединение закрыто параллельно
+        }
+    }
+
+    @Override
+    protected void closeChannel() {
+        synchronized (outbound) {
+            for (ByteBuffer buffer : outbound) getBufferPool().release(buffer);
+            outbound.clear();
+            outboundBytes = 0;
+        }
+        try {
+            if (key != null) key.cancel();
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Ошибка закрытия канала: {}", e.getMessage());
+        }
+    }
+}
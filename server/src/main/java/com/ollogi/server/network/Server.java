@@ -0,0 +1,19 @@
+package com.ollogi.server.network;
+
+/**
+ * Транспортный движок сервера: принимает соединения и передает запросы в {@link Handler}.
+ * Движки отличаются только способом ввода-вывода; обработка запросов у них общая.
+ */
+public interface Server {
+    /**
+     * Запускает сервер. Метод не возвращает управление, пока сервер работает.
+     */
+    void start();
+
+    /**
+     * Возвращает сводку метрик сервера.
+     *
+     * @return Строка со статистикой сервера.
+     */
+    String stats();
+}
@@ -0,0 +1,159 @@
+package com.ollogi.server.network;
+
+import com.general.managers.CollectionListener;
+import com.general.network.ChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Подписки клиентов на изменения коллекции.
+ * События изменения приходят из {@link com.general.managers.CollectionManager} в потоке, выполняющем команду,
+ * и только ставятся в очередь каждого подписчика; сериализация и отправка выполняются в отдельном потоке.
+ * Очередь подписчика ограничена {@code server.subscriberBufferSize} событиями, и события не отправляются, пока
+ * у соединения больше {@code server.streamHighWater} неотправленных байтов. Если клиент не успевает принимать события
+ * и очередь переполняется, накопленные события отбрасываются, а клиенту отправляется {@link ChangeEvent#resync()}.
+ * Подписанное соединение может долго только получать события, ничего не отправляя само, поэтому оно помечается
+ * ({@link Connection#isSubscribed()}) и не закрывается по простою.
+ */
+public class Subscriptions implements CollectionListener {
+    private static final Logger logger = LoggerFactory.getLogger("Subscriptions");
+    private static final int BUFFER_SIZE = Integer.getInteger("server.subscriberBufferSize", 256);
+    private static final long RETRY_MILLIS = 10;
+
+    private final Map<Connection, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "subscriptions");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder sentEvents = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+
+    /**
+     * Подписывает соединение на изменения коллекции.
+     *
+     * @param connection Соединение с клиентом.
+     * @return true, если соединение не было подписано раньше.
+     */
+    public boolean subscribe(Connection connection) {
+        connection.setSubscribed(true);
+        return subscribers.putIfAbsent(connection, new Subscriber(connection)) == null;
+    }
+
+    /**
+     * Отменяет подписку соединения.
+     *
+     * @param connection Соединение с клиентом.
+     * @return true, если соединение было подписано.
+     */
+    public boolean unsubscribe(Connection connection) {
+        connection.setSubscribed(false);
+        return subscribers.remove(connection) != null;
+    }
+
+    @Override
+    public void collectionChanged(ChangeEvent event) {
+        for (Subscriber subscriber : subscribers.values()) {
+            if (subscriber.connection.isClosed()) {
+                subscribers.remove(subscriber.connection, subscriber);
+            } else {
+                subscriber.offer(event);
+            }
+        }
+    }
+
+    /**
+     * Возвращает сводку метрик подписок.
+     *
+     * @return Строка со статистикой подписок.
+     */
+    public String stats() {
+        return String.format("Подписчиков: %d, отправлено событий %d, отправлено уведомлений о пропуске событий %d",
+                subscribers.size(), sentEvents.sum(), resyncs.sum());
+    }
+
+    /**
+     * Очередь событий одного подписчика.
+     */
+    private class Subscriber {
+        private final Connection connection;
+        private final Deque<ChangeEvent> pending = new ArrayDeque<>();
+        private boolean overflowed = false;
+        private boolean scheduled = false;
+
+        private Subscriber(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Ставит событие в очередь. После переполнения события не принимаются, пока клиенту не будет
+         * отправлено уведомление о пропуске: состояние, которое он получит заново, уже будет их учитывать.
+         *
+         * @param event Событие изменения.
+         */
+        private synchronized void offer(ChangeEvent event) {
+            if (overflowed) return;
+            if (pending.size() >= BUFFER_SIZE) {
+                logger.warn("Клиент {} не успевает принимать события, очередь из {} событий отброшена",
+                        connection.getRemoteAddress(), pending.size());
+                pending.clear();
+                overflowed = true;
+            } else {
+                pending.add(event);
+            }
+            schedule(0);
+        }
+
+        /**
+         * Планирует отправку очереди, если она еще не запланирована. Вызывается под блокировкой подписчика.
+         *
+         * @param delayMillis Задержка перед отправкой.
+         */
+        private void schedule(long delayMillis) {
+            if (scheduled) return;
+            scheduled = true;
+            executor.schedule(this::drain, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Отправляет накопленные события, пока клиент успевает их принимать.
+         */
+        private void drain() {
+            while (true) {
+                ChangeEvent event;
+                synchronized (this) {
+                    scheduled = false;
+                    if (connection.isClosed()) {
+                        subscribers.remove(connection, this);
+                        pending.clear();
+                        return;
+                    }
+                    if (connection.getOutboundBytes() > Connection.STREAM_HIGH_WATER) {
+                        schedule(RETRY_MILLIS);
+                        return;
+                    }
+                    if (overflowed) {
+                        overflowed = false;
+                        event = ChangeEvent.resync();
+                        resyncs.increment();
+                    } else {
+                        event = pending.poll();
+                    }
+                    if (event == null) return;
+                    scheduled = true;
+                }
+                TCPWriter.sendResponse(connection, event, ChangeEvent.SUBSCRIBE_COMMAND);
+                sentEvents.increment();
+            }
+        }
+    }
+}
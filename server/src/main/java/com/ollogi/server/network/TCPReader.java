@@ -1,17 +1,16 @@
 package com.ollogi.server.network;
 
+import com.general.network.FrameDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 
 /**
  * Задача, выполняемая в отдельном потоке, для чтения входящих запросов из канала сокета клиента.
- * Этот класс читает данные из канала, парсит их и передает дальнейшую обработку обработчику.
+ * Этот класс читает данные из канала, выделяет из них кадры запросов и передает их в пул обработчиков.
  * Обеспечивает эффективное неблокирующее чтение с использованием Java NIO.
  */
 public class TCPReader implements Runnable {
@@ -37,53 +36,44 @@ public class TCPReader implements Runnable {
     }
 
     /**
-     * Читает входящий запрос из канала сокета клиента.
-     * Этот метод обрабатывает процесс чтения, обеспечивая неблокирующую работу и обработку частичных чтений.
+     * Читает входящие запросы из канала сокета клиента.
+     * Прочитанные байты накапливаются в {@link FrameDecoder} соединения, после чего каждый полностью
+     * полученный кадр передается обработчику. Неполный кадр остается в буфере до следующего чтения.
      *
-     * @return true, если чтение и парсинг запроса прошли успешно, иначе false.
+     * @return true, если чтение и разбор кадров прошли успешно, иначе false.
      */
     private boolean readRequest() {
         SocketChannel clientSocketChannel = (SocketChannel) key.channel();
-        ByteBuffer buffer = ByteBuffer.allocate(8192);
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        SelectorConnection connection = (SelectorConnection) key.attachment();
+        FrameDecoder frameDecoder = connection.getFrameDecoder();
 
         try {
             logger.debug("Чтение запроса от {}", clientSocketChannel.getRemoteAddress());
-            int bytesRead;
-            while ((bytesRead = clientSocketChannel.read(buffer)) > 0) {
-                buffer.flip();
-                byteArrayOutputStream.write(buffer.array(), 0, buffer.limit());
-                buffer.clear();
-            }
-            if (bytesRead == -1) {
+            if (frameDecoder.readFrom(clientSocketChannel) == -1) {
                 // Соединение закрыто клиентом
-                closeConnection(clientSocketChannel);
+                closeConnection(connection);
                 return false;
             }
+            connection.touch();
+
+            // Передаем в пул обработчиков каждый полностью полученный запрос, пока пул их принимает
+            connection.dispatchBuffered();
         } catch (IOException e) {
             logger.error("Ошибка чтения данных: {}", e.getMessage());
-            closeConnection(clientSocketChannel);
+            closeConnection(connection);
             return false;
         }
-
-        // Запускаем новый обработчик для обработки запроса
-        new Handler(clientSocketChannel, byteArrayOutputStream).run();
         return true;
     }
 
     /**
      * Закрывает соединение с клиентом.
-     * Этот метод обрабатывает закрытие канала и отмену ключа выбора.
+     * Этот метод обрабатывает закрытие канала, отмену ключа выбора и очистку очереди отправки.
      *
-     * @param clientSocketChannel Канал сокета клиента, который нужно закрыть.
+     * @param connection Соединение с клиентом, которое нужно закрыть.
      */
-    private void closeConnection(SocketChannel clientSocketChannel) {
-        try {
-            key.cancel();
-            clientSocketChannel.close();
-            logger.info("Соединение закрыто: {}", clientSocketChannel.getRemoteAddress());
-        } catch (IOException e) {
-            logger.error("Ошибка закрытия канала: {}", e.getMessage());
-        }
+    private void closeConnection(Connection connection) {
+        logger.info("Соединение закрыто: {}", connection.getRemoteAddress());
+        connection.close();
     }
 }
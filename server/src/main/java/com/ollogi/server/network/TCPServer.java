@@ -5,56 +5,115 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
 import java.nio.channels.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * TCP-сервер, прослушивающий входящие соединения и обрабатывающий их асинхронно.
  * Сервер разработан для неблокирующей работы, используя Java NIO и селектор для управления несколькими соединениями.
- * Он использует пул потоков для асинхронной обработки операций чтения.
+ * Если задано ненулевое количество реакторов, поток сервера только принимает соединения и распределяет их
+ * по кругу между реакторами, каждый из которых обслуживает ввод-вывод своих клиентов в отдельном потоке.
+ * При нулевом количестве реакторов прием и чтение соединений выполняются в одном потоке.
+ * Сами запросы в обоих режимах выполняются в пуле обработчиков {@link WorkerPool}.
+ * Количество одновременных соединений ограничено: при достижении предела сервер перестает принимать
+ * новые соединения (они ждут в очереди ОС), пока какое-нибудь из открытых не закроется.
+ * Соединения, по которым дольше {@code server.idleTimeoutMillis} не было ни чтения, ни записи,
+ * закрываются {@link IdleReaper} того потока, который их обслуживает.
+ * Если задано свойство {@code server.unixSocket}, сервер дополнительно принимает соединения через сокет домена Unix
+ * по указанному пути: локальные клиенты обходят стек TCP, а обслуживаются такие соединения так же, как TCP.
  */
-public class TCPServer {
+public class TCPServer implements Server {
     private static final Logger logger = LoggerFactory.getLogger("TCPServer");
+    private static final int MAX_CONNECTIONS = Integer.getInteger("server.maxConnections", 1024);
+    private static final long IDLE_TIMEOUT_MILLIS = Long.getLong("server.idleTimeoutMillis", 5 * 60 * 1000L);
+    private static final String UNIX_SOCKET = System.getProperty("server.unixSocket");
     private final int port;
+    private final Reactor[] reactors;
+    private final WorkerPool workerPool;
+    private final BufferPool bufferPool = new BufferPool();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final LongAdder reapedConnections = new LongAdder();
+    private final IdleReaper idleReaper = new IdleReaper(IDLE_TIMEOUT_MILLIS, reapedConnections);
+    private int nextReactor = 0;
     private Selector selector;
-    private ServerSocketChannel serverSocketChannel;
+    private final List<SelectionKey> serverKeys = new ArrayList<>();
 
     /**
-     * Создает TCP-сервер с указанным портом.
+     * Создает однопоточный TCP-сервер с указанным портом.
      *
      * @param port Порт, на котором сервер будет прослушивать входящие соединения.
      */
     public TCPServer(int port) {
+        this(port, 0, new WorkerPool(1, 1024));
+    }
+
+    /**
+     * Создает TCP-сервер с указанным портом, количеством реакторов и пулом обработчиков.
+     *
+     * @param port         Порт, на котором сервер будет прослушивать входящие соединения.
+     * @param reactorCount Количество потоков-реакторов; 0 — обслуживать соединения в потоке сервера.
+     * @param workerPool   Пул, в котором выполняются обработчики запросов.
+     */
+    public TCPServer(int port, int reactorCount, WorkerPool workerPool) {
         this.port = port;
+        this.reactors = new Reactor[Math.max(reactorCount, 0)];
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Возвращает сводку метрик сервера.
+     *
+     * @return Строка со статистикой сервера.
+     */
+    @Override
+    public String stats() {
+        return String.format("Соединений: %d из %d, закрыто по простою %d",
+                connections.get(), MAX_CONNECTIONS, reapedConnections.sum()) + "\n"
+                + workerPool.stats() + "\n" + bufferPool.stats();
     }
 
     /**
      * Запускает TCP-сервер, инициализируя канал серверного сокета и обрабатывая входящие соединения.
      * Этот метод содержит основной цикл сервера, который непрерывно ожидает событий на зарегистрированных каналах.
      */
+    @Override
     public void start() {
         initServerSocketChannel();
+        startReactors();
         while (!Thread.currentThread().isInterrupted()) {
             select();
             for (SelectionKey key : selector.selectedKeys()) {
-                if (key.isAcceptable()) {
-                    handleAccept();
-                } else if (key.isReadable()) {
-                    new TCPReader(key).run();
+                if (key.isValid() && key.isAcceptable()) {
+                    handleAccept((ServerSocketChannel) key.channel());
+                } else {
+                    if (key.isValid() && key.isReadable()) {
+                        new TCPReader(key).run();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        ((SelectorConnection) key.attachment()).flush();
+                    }
                 }
             }
             selector.selectedKeys().clear();
+            idleReaper.expire();
         }
     }
 
     /**
      * Ожидает событий на зарегистрированных каналах.
-     * Этот метод блокируется, пока не произойдут события или пока поток не будет прерван.
+     * Этот метод блокируется, пока не произойдут события, не пройдет тик сборщика простаивающих соединений
+     * или пока поток не будет прерван.
      */
     private void select() {
         try {
-            selector.select();
+            selector.select(idleReaper.selectTimeout());
         } catch (Exception e) {
             logger.error("Ошибка выбора потока: {}", e.getMessage());
         }
@@ -62,16 +121,20 @@ public class TCPServer {
 
     /**
      * Инициализирует канал серверного сокета и регистрирует его в селекторе.
-     * Этот метод настраивает сервер для принятия входящих соединений на указанном порту.
+     * Этот метод настраивает сервер для принятия входящих соединений на указанном порту
+     * и, если задан путь, через сокет домена Unix.
      */
     private void initServerSocketChannel() {
         try {
             selector = Selector.open();
-            serverSocketChannel = ServerSocketChannel.open();
+            ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
             serverSocketChannel.configureBlocking(false);
             serverSocketChannel.socket().bind(new InetSocketAddress(port));
-            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+            serverKeys.add(serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT));
             logger.info("Сервер запущен на порту {}", port);
+            if (UNIX_SOCKET != null) {
+                initUnixSocketChannel(Path.of(UNIX_SOCKET));
+            }
         } catch (ClosedChannelException e) {
             logger.error("Канал закрыт: {}", e.getMessage());
         } catch (IOException e) {
@@ -79,20 +142,107 @@ public class TCPServer {
         }
     }
 
+    /**
+     * Открывает сокет домена Unix и регистрирует его в селекторе. Файл сокета, оставшийся от предыдущего запуска,
+     * удаляется перед привязкой, а новый удаляется при завершении работы сервера.
+     *
+     * @param path Путь к файлу сокета.
+     * @throws IOException если сокет не удалось открыть
+     */
+    private void initUnixSocketChannel(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        ServerSocketChannel unixChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        unixChannel.configureBlocking(false);
+        unixChannel.bind(UnixDomainSocketAddress.of(path));
+        path.toFile().deleteOnExit();
+        serverKeys.add(unixChannel.register(selector, SelectionKey.OP_ACCEPT));
+        logger.info("Сервер принимает соединения через сокет {}", path);
+    }
+
+    /**
+     * Создает и запускает потоки-реакторы.
+     */
+    private void startReactors() {
+        for (int i = 0; i < reactors.length; i++) {
+            try {
+                reactors[i] = new Reactor(new IdleReaper(IDLE_TIMEOUT_MILLIS, reapedConnections));
+            } catch (IOException e) {
+                logger.error("Ошибка открытия селектора реактора: {}", e.getMessage());
+                throw new IllegalStateException(e);
+            }
+            new Thread(reactors[i], "reactor-" + i).start();
+        }
+        if (reactors.length > 0) {
+            logger.info("Запущено реакторов: {}", reactors.length);
+        }
+    }
+
+    /**
+     * Учитывает закрытие соединения и, если сервер перестал принимать соединения из-за предела,
+     * возобновляет прием. Может вызываться из любого потока.
+     */
+    private void connectionClosed() {
+        if (connections.decrementAndGet() < MAX_CONNECTIONS) {
+            setAccepting(true);
+        }
+    }
+
+    /**
+     * Включает или приостанавливает прием соединений на всех серверных сокетах.
+     *
+     * @param accepting true, чтобы принимать соединения.
+     */
+    private void setAccepting(boolean accepting) {
+        for (SelectionKey serverKey : serverKeys) {
+            if (!serverKey.isValid()) continue;
+            boolean enabled = (serverKey.interestOps() & SelectionKey.OP_ACCEPT) != 0;
+            if (accepting && !enabled) {
+                serverKey.interestOpsOr(SelectionKey.OP_ACCEPT);
+                selector.wakeup();
+            } else if (!accepting && enabled) {
+                serverKey.interestOpsAnd(~SelectionKey.OP_ACCEPT);
+            }
+        }
+    }
+
     /**
      * Обрабатывает запрос на входящее соединение.
-     * Этот метод принимает соединение, настраивает его как неблокирующее и регистрирует его в селекторе для событий чтения.
+     * Этот метод принимает соединение, настраивает его как неблокирующее и регистрирует его для событий чтения:
+     * в очередном по кругу реакторе или, если реакторов нет, в селекторе сервера.
+     * Если после этого достигнут предел соединений, прием новых соединений приостанавливается.
+     *
+     * @param serverSocketChannel Серверный сокет, на котором есть входящее соединение.
      */
-    private void handleAccept() {
+    private void handleAccept(ServerSocketChannel serverSocketChannel) {
+        SocketChannel client;
+        try {
+            client = serverSocketChannel.accept();
+        } catch (IOException e) {
+            logger.error("Ошибка приема соединения: {}", e.getMessage());
+            return;
+        }
+        if (client == null) return;
+
+        if (connections.incrementAndGet() >= MAX_CONNECTIONS) {
+            setAccepting(false);
+            logger.warn("Достигнут предел соединений ({}), прием приостановлен", MAX_CONNECTIONS);
+            // Соединение могло закрыться до снятия интереса: тогда прием нужно вернуть
+            if (connections.get() < MAX_CONNECTIONS) setAccepting(true);
+        }
+        SelectorConnection connection = new SelectorConnection(client, workerPool, bufferPool, this::connectionClosed);
         try {
-            SocketChannel client = serverSocketChannel.accept();
-            if (client != null) {
-                client.configureBlocking(false);
-                client.register(selector, SelectionKey.OP_READ);
-                logger.info("Новое соединение: {}", client.getRemoteAddress());
+            client.configureBlocking(false);
+            logger.info("Новое соединение: {}", client.getRemoteAddress());
+            if (reactors.length == 0) {
+                connection.attach(client.register(selector, SelectionKey.OP_READ, connection));
+                idleReaper.register(connection);
+            } else {
+                reactors[nextReactor].register(connection);
+                nextReactor = (nextReactor + 1) % reactors.length;
             }
         } catch (IOException e) {
             logger.error("Ошибка приема соединения: {}", e.getMessage());
+            connection.close();
         }
     }
 }
@@ -1,46 +1,316 @@
 package com.ollogi.server.network;
 
+import com.general.network.BinaryCodec;
+import com.general.network.Codec;
+import com.general.network.Compression;
+import com.general.network.Frame;
+import com.general.network.Handshake;
 import com.general.network.Response;
+import com.general.network.StreamChunk;
+import com.general.network.StreamedResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
 
 /**
  * Утилитарный класс для отправки ответов клиентам по TCP-соединениям.
- * Этот класс предоставляет методы для сериализации и отправки объектов ответов через SocketChannel.
+ * Этот класс предоставляет методы для сериализации ответов в формате соединения ({@link Codec})
+ * и постановки их в очередь отправки соединения.
+ * Если клиент согласовал сжатие, тела ответов больше {@code server.compressionThreshold} байтов сжимаются
+ * {@link Deflater}; коэффициент сжатия и затраченное процессорное время записываются в журнал для каждой команды.
+ * Потоковые ответы отправляются частями не больше {@code server.streamChunkSize} символов.
  */
 public class TCPWriter {
     private static final Logger logger = LoggerFactory.getLogger("TCPWriter");
+    private static final int COMPRESSION_THRESHOLD = Integer.getInteger("server.compressionThreshold", 16 * 1024);
+    private static final int COMPRESSION_LEVEL = Integer.getInteger("server.compressionLevel", Deflater.BEST_SPEED);
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(COMPRESSION_LEVEL));
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final int STREAM_CHUNK_SIZE = Integer.getInteger("server.streamChunkSize", 32 * 1024);
 
     /**
-     * Отправляет объект ответа клиенту через указанный сокет-канал.
-     * Ответ сериализуется и записывается в канал неблокирующим способом.
+     * Отправляет объект ответа клиенту через указанное соединение.
+     * Ответ сериализуется в формате соединения, и заголовок кадра вместе с телом ставятся в очередь отправки
+     * соединения; запись в канал выполняется без ожидания, остаток дописывается по готовности канала.
      *
-     * @param clientSocketChannel Сокет-канал, подключенный к клиенту.
-     * @param response            Объект ответа для отправки.
+     * @param connection Соединение с клиентом.
+     * @param response   Объект ответа для отправки.
+     * @param command    Имя команды, на которую дан ответ, для журнала; может быть null.
      */
-    public static void sendResponse(SocketChannel clientSocketChannel, Response response) {
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-             ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+    public static void sendResponse(Connection connection, Response response, String command) {
+        sendResponse(connection, response, command, null);
+    }
+
+    /**
+     * Отправляет объект ответа клиенту и сохраняет копию отправленного тела кадра для {@link ResponseCache}.
+     *
+     * @param connection Соединение с клиентом.
+     * @param response   Объект ответа для отправки.
+     * @param command    Имя команды, на которую дан ответ, для журнала; может быть null.
+     * @param recorder   Копия тела кадра для кэша ответов или null.
+     * @return true, если отправлен сам ответ, а не сообщение об ошибке его сериализации.
+     */
+    public static boolean sendResponse(Connection connection, Response response, String command,
+                                       ResponseCache.Recorder recorder) {
+        logger.debug("Отправка ответа клиенту {}", connection.getRemoteAddress());
+        ByteBuffer frame = encode(connection, response);
+        if (frame == null) {
+            ByteBuffer error = encodeError(connection, response.getRequestId());
+            if (error != null) connection.send(error);
+            return false;
+        }
+        connection.send(seal(connection, frame, response.getRequestId(), command, recorder));
+        return true;
+    }
 
-            logger.debug("Отправка ответа клиенту {}", clientSocketChannel.getRemoteAddress());
-            objectOutputStream.writeObject(response);
-            objectOutputStream.flush();
+    /**
+     * Сериализует ответ в готовый кадр с текущими форматом и возможностями соединения, но не отправляет его.
+     * Нужен, когда формат или возможности соединения меняются сразу после ответа: кадр сериализуется по-старому,
+     * а в очередь отправки ставится уже после переключения.
+     *
+     * @param connection Соединение с клиентом.
+     * @param response   Объект ответа.
+     * @param command    Имя команды, на которую дан ответ, для журнала; может быть null.
+     * @return Кадр с заголовком или null, если не удалось сериализовать даже сообщение об ошибке.
+     */
+    public static ByteBuffer frameResponse(Connection connection, Response response, String command) {
+        ByteBuffer frame = encode(connection, response);
+        if (frame == null) return encodeError(connection, response.getRequestId());
+        return seal(connection, frame, response.getRequestId(), command, null);
+    }
 
-            byte[] responseBytes = byteArrayOutputStream.toByteArray();
-            ByteBuffer buffer = ByteBuffer.wrap(responseBytes);
+    /**
+     * Сериализует сообщение о том, что ответ сериализовать не удалось. Клиент ждет ответа на запрос,
+     * поэтому получает ответ, который сериализуется в любом формате.
+     *
+     * @param connection Соединение с клиентом.
+     * @param requestId  Идентификатор запроса.
+     * @return Кадр с заголовком или null.
+     */
+    private static ByteBuffer encodeError(Connection connection, int requestId) {
+        Response error = new Response(false, "Не удалось сериализовать ответ");
+        error.setRequestId(requestId);
+        ByteBuffer frame = encode(connection, error);
+        if (frame != null) Frame.putHeader(frame, requestId);
+        return frame;
+    }
 
-            // Запись байтов ответа в канал
-            while (buffer.hasRemaining()) {
-                clientSocketChannel.write(buffer);
+    /**
+     * Сжимает сериализованный ответ, если клиент согласовал сжатие, и записывает заголовок кадра.
+     *
+     * @param connection Соединение с клиентом.
+     * @param frame      Буфер с телом после {@link Frame#HEADER_SIZE} байтов.
+     * @param requestId  Идентификатор запроса.
+     * @param command    Имя команды для журнала; может быть null.
+     * @param recorder   Копия тела кадра для кэша ответов или null.
+     * @return Готовый к отправке кадр.
+     */
+    private static ByteBuffer seal(Connection connection, ByteBuffer frame, int requestId, String command,
+                                   ResponseCache.Recorder recorder) {
+        boolean compressed = false;
+        if (connection.supports(Handshake.COMPRESSION) && frame.remaining() - Frame.HEADER_SIZE > COMPRESSION_THRESHOLD) {
+            ByteBuffer deflated = compress(connection.getBufferPool(), frame, command);
+            if (deflated != null) {
+                connection.getBufferPool().release(frame);
+                frame = deflated;
+                compressed = true;
             }
-        } catch (IOException e) {
+        }
+        if (recorder != null) recorder.record(frame, compressed);
+        Frame.putHeader(frame, requestId, compressed);
+        return frame;
+    }
+
+    /**
+     * Сериализует ответ в буфер из пула, оставляя в начале место под заголовок кадра.
+     * Двоичный формат знает размер сообщения заранее и записывается сразу в буфер нужного размера,
+     * остальные форматы пишут в растущий буфер {@link PooledOutputStream}.
+     *
+     * @param connection Соединение с клиентом.
+     * @param response   Объект ответа.
+     * @return Буфер с телом после {@link Frame#HEADER_SIZE} байтов или null, если ответ не удалось сериализовать.
+     */
+    private static ByteBuffer encode(Connection connection, Response response) {
+        Codec codec = connection.getCodec();
+        if (codec instanceof BinaryCodec binary) {
+            ByteBuffer frame = null;
+            try {
+                int size = Frame.HEADER_SIZE + binary.encodedSize(response);
+                frame = connection.getBufferPool().lease(size);
+                frame.limit(size).position(Frame.HEADER_SIZE);
+                binary.encode(response, frame);
+                return frame.flip();
+            } catch (RuntimeException e) {
+                logger.error("Ошибка отправки ответа: {}", e.getMessage());
+                if (frame != null) connection.getBufferPool().release(frame);
+                return null;
+            }
+        }
+
+        PooledOutputStream pooledOutputStream = new PooledOutputStream(connection.getBufferPool(), Frame.HEADER_SIZE);
+        try {
+            codec.encode(response, pooledOutputStream);
+        } catch (IOException | RuntimeException e) {
             logger.error("Ошибка отправки ответа: {}", e.getMessage());
+            pooledOutputStream.discard();
+            return null;
+        }
+        return pooledOutputStream.toBuffer();
+    }
+
+    /**
+     * Отправляет потоковый ответ: строки результата формируются по мере отправки и уходят клиенту частями
+     * {@link StreamChunk}, после чего отправляется завершающий ответ. Если клиент не успевает принимать данные,
+     * формирование строк откладывается до освобождения очереди отправки, а поток пула не ждет
+     * (см. {@link Connection#whenWritable(Runnable)}). Если строку сформировать не удалось, поток завершается
+     * ответом об ошибке.
+     *
+     * @param connection Соединение с клиентом.
+     * @param streamed   Потоковый результат команды.
+     * @param requestId  Идентификатор запроса.
+     * @param command    Имя команды для журнала.
+     */
+    public static void sendStream(Connection connection, StreamedResponse streamed, int requestId, String command) {
+        sendStream(connection, streamed, requestId, command, null, sent -> {
+        });
+    }
+
+    /**
+     * Отправляет потоковый ответ и сохраняет копии отправленных тел кадров для {@link ResponseCache}.
+     * Отправка может завершиться уже после возврата из метода, в другом потоке пула.
+     *
+     * @param connection Соединение с клиентом.
+     * @param streamed   Потоковый результат команды.
+     * @param requestId  Идентификатор запроса.
+     * @param command    Имя команды для журнала.
+     * @param recorder   Копии тел кадров для кэша ответов или null.
+     * @param onSent     Действие, выполняемое один раз по завершении отправки, в том числе при закрытии соединения;
+     *                   получает true, если поток отправлен полностью и без ошибок формирования строк.
+     */
+    public static void sendStream(Connection connection, StreamedResponse streamed, int requestId, String command,
+                                  ResponseCache.Recorder recorder, Consumer<Boolean> onSent) {
+        new StreamSender(connection, streamed, requestId, command, recorder, onSent).run();
+    }
+
+    /**
+     * Отправляет накопленные строки частью потокового ответа и очищает накопитель.
+     *
+     * @param connection Соединение с клиентом.
+     * @param chunk      Накопленные строки.
+     * @param requestId  Идентификатор запроса.
+     * @param command    Имя команды для журнала.
+     * @param recorder   Копия тела кадра для кэша ответов или null.
+     * @return true, если часть отправлена.
+     */
+    private static boolean sendChunk(Connection connection, StringBuilder chunk, int requestId, String command,
+                                  ResponseCache.Recorder recorder) {
+        StreamChunk response = new StreamChunk(chunk.toString());
+        response.setRequestId(requestId);
+        chunk.setLength(0);
+        return sendResponse(connection, response, command, recorder);
+    }
+
+    /**
+     * Формирует и отправляет части потокового ответа. Когда очередь отправки переполнена, откладывает себя
+     * и продолжает с той же строки в потоке пула, как только клиент примет данные.
+     */
+    private static class StreamSender implements Runnable {
+        private final Connection connection;
+        private final StreamedResponse streamed;
+        private final int requestId;
+        private final String command;
+        private final ResponseCache.Recorder recorder;
+        private final Consumer<Boolean> onSent;
+        private final StringBuilder chunk = new StringBuilder();
+        private Iterator<String> rows;
+        private boolean complete = true;
+
+        StreamSender(Connection connection, StreamedResponse streamed, int requestId, String command,
+                     ResponseCache.Recorder recorder, Consumer<Boolean> onSent) {
+            this.connection = connection;
+            this.streamed = streamed;
+            this.requestId = requestId;
+            this.command = command;
+            this.recorder = recorder;
+            this.onSent = onSent;
+        }
+
+        @Override
+        public void run() {
+            if (rows != null && connection.isClosed()) {
+                onSent.accept(false);
+                return;
+            }
+            Response end = streamed.getEnd();
+            try {
+                if (rows == null) rows = streamed.getRows().iterator();
+                while (rows.hasNext()) {
+                    if (!chunk.isEmpty()) chunk.append('\n');
+                    chunk.append(rows.next());
+                    if (chunk.length() >= STREAM_CHUNK_SIZE) {
+                        complete &= sendChunk(connection, chunk, requestId, command, recorder);
+                        if (connection.whenWritable(this)) return;
+                        if (connection.isClosed()) {
+                            onSent.accept(false);
+                            return;
+                        }
+                    }
+                }
+                if (!chunk.isEmpty()) complete &= sendChunk(connection, chunk, requestId, command, recorder);
+            } catch (RuntimeException e) {
+                logger.error("Ошибка формирования потокового ответа: {}", e.getMessage());
+                end = new Response(false, "Ошибка формирования ответа: " + e.getMessage());
+                complete = false;
+            }
+            end.setRequestId(requestId);
+            onSent.accept(sendResponse(connection, end, command, recorder) && complete);
         }
     }
+
+    /**
+     * Сжимает тело кадра в новый буфер из пула, оставляя в его начале место под заголовок.
+     *
+     * @param bufferPool Пул буферов.
+     * @param frame      Кадр с несжатым телом после {@link Frame#HEADER_SIZE} байтов.
+     * @param command    Имя команды для журнала.
+     * @return Кадр со сжатым телом или null, если сжатие не уменьшает размер тела.
+     */
+    private static ByteBuffer compress(BufferPool bufferPool, ByteBuffer frame, String command) {
+        int size = frame.remaining() - Frame.HEADER_SIZE;
+        long startCpu = THREADS.getCurrentThreadCpuTime();
+
+        // Сжатое тело вместе с префиксом длины должно быть меньше исходного, иначе сжимать незачем
+        ByteBuffer deflated = bufferPool.lease(Frame.HEADER_SIZE + size);
+        deflated.limit(Frame.HEADER_SIZE + size);
+        deflated.position(Frame.HEADER_SIZE);
+        deflated.putInt(size);
+
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        frame.position(Frame.HEADER_SIZE);
+        deflater.setInput(frame);
+        deflater.finish();
+        while (!deflater.finished() && deflated.hasRemaining()) {
+            deflater.deflate(deflated);
+        }
+        frame.position(0);
+        if (!deflater.finished()) {
+            bufferPool.release(deflated);
+            return null;
+        }
+        deflated.flip();
+
+        int compressedSize = deflated.remaining() - Frame.HEADER_SIZE - Compression.LENGTH_PREFIX_SIZE;
+        logger.info("Ответ на команду {} сжат: {} -> {} байт ({}%), процессорное время {} мс", command, size,
+                compressedSize, compressedSize * 100L / size,
+                String.format("%.3f", (THREADS.getCurrentThreadCpuTime() - startCpu) / 1_000_000.0));
+        return deflated;
+    }
 }
@@ -0,0 +1,88 @@
+package com.ollogi.server.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Хешированное колесо таймеров: кольцо из ячеек, каждая из которых соответствует одному тику.
+ * Постановка таймера — O(1): элемент добавляется в ячейку, номер которой равен номеру тика срабатывания
+ * по модулю размера кольца. При повороте колеса просматривается только текущая ячейка; элементы,
+ * срок которых наступит лишь на следующих оборотах, остаются в ней.
+ * Класс не потокобезопасен и используется одним потоком селектора.
+ *
+ * @param <T> тип элементов, для которых ставятся таймеры
+ */
+public class TimingWheel<T> {
+    private final List<Entry<T>>[] slots;
+    private final long tickMillis;
+    private final long startMillis;
+    private long currentTick = 0;
+
+    /**
+     * Создает колесо таймеров.
+     *
+     * @param slotCount   Количество ячеек.
+     * @param tickMillis  Длительность одного тика в миллисекундах.
+     * @param startMillis Момент, от которого отсчитываются тики.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(int slotCount, long tickMillis, long startMillis) {
+        this.slots = new List[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * Возвращает длительность одного тика.
+     *
+     * @return Длительность тика в миллисекундах.
+     */
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Ставит таймер для элемента.
+     *
+     * @param item        Элемент.
+     * @param delayMillis Задержка до срабатывания в миллисекундах.
+     */
+    public void schedule(T item, long delayMillis) {
+        long deadlineTick = currentTick + Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        slots[(int) (deadlineTick % slots.length)].add(new Entry<>(item, deadlineTick));
+    }
+
+    /**
+     * Поворачивает колесо до указанного момента и передает обработчику элементы, срок которых наступил.
+     * Обработчик может снова поставить таймер для элемента.
+     *
+     * @param nowMillis Текущий момент.
+     * @param expired   Обработчик сработавших элементов.
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long targetTick = (nowMillis - startMillis) / tickMillis;
+        List<T> due = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            List<Entry<T>> slot = slots[(int) (currentTick % slots.length)];
+            if (slot.isEmpty()) continue;
+            slot.removeIf(entry -> {
+                if (entry.deadlineTick() > currentTick) return false;
+                due.add(entry.item());
+                return true;
+            });
+            due.forEach(expired);
+            due.clear();
+        }
+    }
+
+    /**
+     * Таймер: элемент и номер тика, на котором он срабатывает.
+     */
+    private record Entry<T>(T item, long deadlineTick) {
+    }
+}
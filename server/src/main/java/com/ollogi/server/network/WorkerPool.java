@@ -0,0 +1,288 @@
+package com.ollogi.server.network;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный пул потоков, в котором выполняются обработчики запросов.
+ * Упорядоченные задачи соединения проходят через его {@link Lane}: они выполняются строго по очереди,
+ * поэтому ответы уходят клиенту в порядке запросов, а задачи разных соединений выполняются параллельно.
+ * Задачи, порядок которых не важен, передаются напрямую через {@link #execute(Runnable)}.
+ * <p>
+ * Вызывающий поток никогда не выполняет задачу сам, поэтому потоки ввода-вывода заняты только вводом-выводом.
+ * Если очередь пула заполнена, задача откладывается в очередь переполнения и передается в пул, как только
+ * в нем освободится место. Пока пул перегружен ({@link #isSaturated()}), соединения перестают читать
+ * новые запросы и возобновляют чтение по уведомлению {@link #whenAvailable(Runnable)}, поэтому очередь
+ * переполнения остается небольшой: каждое соединение успевает отложить не больше задач, чем у него может быть
+ * запросов в обработке.
+ */
+public class WorkerPool {
+    private static final Logger logger = LoggerFactory.getLogger("WorkerPool");
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder tasks = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder deferred = new LongAdder();
+    private final Deque<Runnable> overflow = new ConcurrentLinkedDeque<>();
+    private final Set<Runnable> waiting = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Создает пул обработчиков.
+     *
+     * @param size       Количество рабочих потоков.
+     * @param queueDepth Максимальное количество задач, ожидающих свободного потока.
+     */
+    public WorkerPool(int size, int queueDepth) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueDepth),
+                runnable -> new Thread(runnable, "worker-" + threadNumber.getAndIncrement()),
+                new ThreadPoolExecutor.AbortPolicy()) {
+            @Override
+            protected void afterExecute(Runnable runnable, Throwable throwable) {
+                taskFinished();
+            }
+        };
+        logger.info("Пул обработчиков: потоков {}, глубина очереди {}", size, queueDepth);
+    }
+
+    /**
+     * Создает новую очередь задач для соединения.
+     *
+     * @param capacity Максимальное количество задач, ожидающих выполнения в очереди.
+     * @return Очередь задач, выполняемых в пуле по порядку.
+     */
+    public Lane newLane(int capacity) {
+        return new Lane(capacity);
+    }
+
+    /**
+     * Выполняет задачу в пуле без упорядочивания относительно других задач соединения.
+     *
+     * @param task Задача для выполнения.
+     */
+    public void execute(Runnable task) {
+        Task timed = new Task(task, System.nanoTime());
+        submit(() -> run(timed));
+    }
+
+    /**
+     * Проверяет, заполнена ли очередь пула. Пока пул перегружен, соединения не должны передавать ему
+     * новые запросы.
+     *
+     * @return true, если новые задачи будут отложены до освобождения очереди.
+     */
+    public boolean isSaturated() {
+        return !overflow.isEmpty() || executor.getQueue().remainingCapacity() == 0;
+    }
+
+    /**
+     * Подписывает действие на однократное уведомление о том, что пул больше не перегружен.
+     * Уведомление выполняется в потоке пула.
+     *
+     * @param listener Действие, например возобновление чтения соединения.
+     * @return true, если действие подписано; false, если пул уже не перегружен и подписка не нужна.
+     */
+    public boolean whenAvailable(Runnable listener) {
+        waiting.add(listener);
+        // Пул мог освободиться до подписки, и тогда уведомления уже не будет
+        if (isSaturated()) return true;
+        waiting.remove(listener);
+        return false;
+    }
+
+    /**
+     * Возвращает сводку метрик пула: количество задач и время их ожидания в очереди.
+     *
+     * @return Строка со статистикой пула.
+     */
+    public String stats() {
+        long count = tasks.sum();
+        double averageWait = count == 0 ? 0 : totalWaitNanos.sum() / (double) count / 1_000_000;
+        return String.format("Пул обработчиков: потоков %d, активных %d, в очереди %d, выполнено задач %d, " +
+                        "среднее ожидание %.3f мс, максимальное ожидание %.3f мс, отложено при заполненной очереди %d",
+                executor.getPoolSize(), executor.getActiveCount(), executor.getQueue().size(), count,
+                averageWait, maxWaitNanos.get() / 1_000_000.0, deferred.sum());
+    }
+
+    /**
+     * Передает задачу в пул, а если его очередь заполнена — в очередь переполнения.
+     *
+     * @param runnable Задача для выполнения.
+     */
+    private void submit(Runnable runnable) {
+        if (overflow.isEmpty()) {
+            try {
+                executor.execute(runnable);
+                return;
+            } catch (RejectedExecutionException ignored) {
+                // Очередь пула заполнена
+            }
+        }
+        deferred.increment();
+        overflow.addLast(runnable);
+        // Очередь могла освободиться до того, как задача попала в очередь переполнения
+        resubmit();
+    }
+
+    /**
+     * Переносит отложенные задачи в очередь пула, пока в ней есть место.
+     * Если задачу вернуть не удалось, а очередь уже не заполнена, попытка повторяется: иначе задача могла бы
+     * остаться в очереди переполнения, когда все задачи пула уже завершились и переносить ее некому.
+     */
+    private void resubmit() {
+        Runnable next;
+        while (!executor.isShutdown() && (next = overflow.pollFirst()) != null) {
+            try {
+                executor.execute(next);
+            } catch (RejectedExecutionException e) {
+                overflow.addFirst(next);
+                if (executor.getQueue().remainingCapacity() == 0) return;
+            }
+        }
+    }
+
+    /**
+     * Вызывается потоком пула после каждой задачи: переносит отложенные задачи и, пока пул не перегружен,
+     * уведомляет ожидающие соединения. Соединение, снова упершееся в заполненный пул, подписывается заново
+     * и ждет следующего уведомления, поэтому обходится снимок подписчиков.
+     */
+    private void taskFinished() {
+        resubmit();
+        if (waiting.isEmpty()) return;
+        for (Runnable listener : List.copyOf(waiting)) {
+            if (isSaturated()) return;
+            if (waiting.remove(listener)) listener.run();
+        }
+    }
+
+    /**
+     * Выполняет задачу, учитывая время, которое она провела в очереди до начала выполнения.
+     *
+     * @param task Задача с моментом постановки в очередь.
+     */
+    private void run(Task task) {
+        long waitNanos = System.nanoTime() - task.enqueuedAt();
+        tasks.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        try {
+            task.runnable().run();
+        } catch (RuntimeException e) {
+            logger.error("Ошибка выполнения задачи: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Упорядоченная очередь задач одного соединения.
+     * В каждый момент в пуле выполняется не более одной задачи очереди.
+     */
+    public class Lane {
+        private final Queue<Task> pending = new ArrayDeque<>();
+        private final int capacity;
+        private boolean running = false;
+
+        private Lane(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Ставит задачу в очередь соединения. Соединение проверяет {@link #isFull()} до постановки задачи.
+         *
+         * @param task Задача для выполнения.
+         * @throws RejectedExecutionException если очередь соединения заполнена.
+         */
+        public void execute(Runnable task) {
+            synchronized (this) {
+                if (pending.size() >= capacity) {
+                    throw new RejectedExecutionException("Очередь задач соединения заполнена");
+                }
+                pending.add(new Task(task, System.nanoTime()));
+                if (running) return;
+                running = true;
+            }
+            submit(this::drain);
+        }
+
+        /**
+         * Возвращает количество задач соединения, ожидающих выполнения.
+         *
+         * @return Количество ожидающих задач.
+         */
+        public synchronized int pending() {
+            return pending.size();
+        }
+
+        /**
+         * Проверяет, заполнена ли очередь соединения.
+         *
+         * @return true, если новую задачу поставить нельзя.
+         */
+        public synchronized boolean isFull() {
+            return pending.size() >= capacity;
+        }
+
+        /**
+         * Выполняет задачи очереди одну за другой в потоке пула. После каждой задачи пытается уступить поток
+         * другим соединениям, продолжая выполнение на месте, только если очередь пула заполнена.
+         */
+        private void drain() {
+            do {
+                Task task;
+                synchronized (this) {
+                    task = pending.poll();
+                }
+                run(task);
+            } while (hasMore() && !trySubmit());
+        }
+
+        /**
+         * Проверяет, остались ли задачи; если нет — снимает признак выполнения.
+         *
+         * @return true, если в очереди есть задачи.
+         */
+        private synchronized boolean hasMore() {
+            if (pending.isEmpty()) {
+                running = false;
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Пытается передать выполнение очереди в пул.
+         *
+         * @return true, если задача принята пулом.
+         */
+        private boolean trySubmit() {
+            try {
+                executor.execute(this::drain);
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Задача вместе с моментом постановки в очередь.
+     */
+    private record Task(Runnable runnable, long enqueuedAt) {
+    }
+}
@@ -0,0 +1,61 @@
+package com.ollogi.server.managers;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Проверка регистрации и входа: незарегистрированный логин отклоняется, а пользователи вместе с идентификаторами
+ * переживают перезапуск сервера, поэтому владельцы элементов коллекции не меняются.
+ */
+public class SessionManagerTest extends TestCase {
+    private Path directory;
+    private String collectionFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("users");
+        collectionFile = directory.resolve("data.json").toString();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = directory.toFile().listFiles();
+        if (files != null) for (File file : files) file.delete();
+        Files.deleteIfExists(directory);
+    }
+
+    public void testUnknownUserIsRejected() {
+        SessionManager sessionManager = new SessionManager(new UserStore(collectionFile));
+        assertNull(sessionManager.login("alice", "secret"));
+        assertNotNull(sessionManager.register("alice", "secret"));
+        assertNull(sessionManager.register("alice", "other"));
+        assertNull(sessionManager.register(" ", "secret"));
+        assertNull(sessionManager.login("alice", "other"));
+        assertNotNull(sessionManager.login("alice", "secret"));
+    }
+
+    public void testUsersSurviveRestart() {
+        SessionManager before = new SessionManager(new UserStore(collectionFile));
+        int alice = before.register("alice", "secret").userId();
+        int bob = before.register("bob", "password").userId();
+        assertTrue(alice != bob);
+        assertTrue(Files.exists(directory.resolve("data.users.json")));
+
+        SessionManager after = new SessionManager(new UserStore(collectionFile));
+        assertEquals(alice, after.login("alice", "secret").userId());
+        assertEquals(bob, after.login("bob", "password").userId());
+        assertNull(after.login("bob", "secret"));
+
+        int carol = after.register("carol", "pw").userId();
+        assertTrue(carol > alice && carol > bob);
+    }
+
+    public void testReservedIdsAreNotReused() {
+        SessionManager sessionManager = new SessionManager(new UserStore(collectionFile));
+        sessionManager.reserveUserIds(41);
+        assertEquals(42, sessionManager.register("alice", "secret").userId());
+    }
+}
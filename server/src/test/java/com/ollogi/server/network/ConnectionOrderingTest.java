@@ -0,0 +1,258 @@
+package com.ollogi.server.network;
+
+import com.general.command.Command;
+import com.general.managers.CollectionManager;
+import com.general.managers.CommandManager;
+import com.general.models.Coordinates;
+import com.general.models.Flat;
+import com.general.models.House;
+import com.general.models.View;
+import com.general.network.Codecs;
+import com.general.network.Compression;
+import com.general.network.Frame;
+import com.general.network.FrameDecoder;
+import com.general.network.Handshake;
+import com.general.network.Request;
+import com.general.network.Response;
+import com.ollogi.server.commands.Add;
+import com.ollogi.server.commands.RemoveLower;
+import com.ollogi.server.commands.Show;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка порядка выполнения запросов одного соединения: клиент отправляет подряд, не дожидаясь ответов,
+ * пары 'add' и 'remove_lower' вперемешку с 'show', и все запросы имеют идентификаторы. Изменяющие запросы должны
+ * выполниться строго по порядку, иначе 'remove_lower' удалит не тот элемент или выполнится раньше 'add'.
+ * Кроме того, соединение не должно передавать на обработку больше запросов, чем позволяет предел запросов
+ * в обработке, даже если все они пришли за одно чтение, а потоковые ответы клиенту, который не принимает данные,
+ * не должны занимать потоки пула.
+ */
+public class ConnectionOrderingTest extends TestCase {
+    private static final int PAIRS = 100;
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("server.maxInFlight", 64);
+
+    /**
+     * Коллекция квартир в памяти, без загрузки и сохранения.
+     */
+    private static class TestCollectionManager extends CollectionManager<Flat> {
+        @Override
+        protected Collection<Flat> createCollection() {
+            return new TreeSet<>(nameOrder());
+        }
+
+        @Override
+        protected void loadCollection() {
+        }
+
+        @Override
+        public void saveCollection() {
+        }
+
+        @Override
+        protected Long getId(Flat element) {
+            return element.getId();
+        }
+    }
+
+    /**
+     * Соединение без канала: отправленные кадры накапливаются в декодере, откуда их читает тест.
+     */
+    private static class RecordingConnection extends Connection {
+        private final FrameDecoder responses = new FrameDecoder();
+        private volatile long outboundBytes = 0;
+
+        RecordingConnection(WorkerPool workerPool) {
+            super(workerPool, new BufferPool(), () -> {
+            });
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public long getOutboundBytes() {
+            return outboundBytes;
+        }
+
+        /**
+         * Изображает клиента, который перестал или снова начал принимать данные.
+         */
+        void setOutboundBytes(long outboundBytes) {
+            this.outboundBytes = outboundBytes;
+            writableChanged();
+        }
+
+        @Override
+        public void send(ByteBuffer... buffers) {
+            synchronized (responses) {
+                for (ByteBuffer buffer : buffers) {
+                    try {
+                        responses.append(buffer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    getBufferPool().release(buffer);
+                }
+                responses.notifyAll();
+            }
+        }
+
+        @Override
+        protected void loadChanged() {
+        }
+
+        @Override
+        protected void closeChannel() {
+        }
+
+        /**
+         * Ждет ответов на указанное количество запросов.
+         */
+        Map<Integer, Response> awaitResponses(int count, long timeoutMillis) throws Exception {
+            Map<Integer, Response> received = new HashMap<>();
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            synchronized (responses) {
+                while (received.size() < count && System.currentTimeMillis() < deadline) {
+                    Frame frame;
+                    while ((frame = responses.nextFrame()) != null) {
+                        received.put(frame.getRequestId(), (Response) Codecs.JAVA.decode(Compression.body(frame)));
+                    }
+                    if (received.size() < count) responses.wait(100);
+                }
+            }
+            return received;
+        }
+    }
+
+    private static Flat flat(int rooms) {
+        return new Flat(0, "flat" + rooms, new Coordinates(1L, 2f), 50, rooms, 3, 5f, View.GOOD,
+                new House("house", 2000, 3L, 1));
+    }
+
+    private static byte[] frame(int requestId, Request request) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Codecs.JAVA.encode(request, body);
+        return Frame.wrap(requestId, body.toByteArray()).array();
+    }
+
+    public void testPipelinedMutationsKeepOrder() throws Exception {
+        TestCollectionManager collectionManager = new TestCollectionManager();
+        CommandManager commandManager = new CommandManager(collectionManager);
+        commandManager.register("add", new Add<>(collectionManager));
+        commandManager.register("remove_lower", new RemoveLower<>(collectionManager));
+        commandManager.register("show", new Show<>(collectionManager));
+        Handler.setCommandManager(commandManager);
+
+        RecordingConnection connection = new RecordingConnection(new WorkerPool(4, 8));
+        ByteArrayOutputStream pipeline = new ByteArrayOutputStream();
+        int requestId = 0;
+        for (int rooms = 1; rooms <= PAIRS; rooms++) {
+            pipeline.write(frame(++requestId, new Request("add", flat(rooms))));
+            pipeline.write(frame(++requestId, new Request("show", null)));
+            pipeline.write(frame(++requestId, new Request("remove_lower", flat(rooms))));
+        }
+        connection.getFrameDecoder().append(ByteBuffer.wrap(pipeline.toByteArray()));
+        connection.dispatchBuffered();
+
+        Map<Integer, Response> responses = connection.awaitResponses(requestId, 30_000);
+        assertEquals(requestId, responses.size());
+        for (int pair = 0; pair < PAIRS; pair++) {
+            Response added = responses.get(3 * pair + 1);
+            assertTrue(added.getMessage(), added.isSuccess());
+            // Клиент без потоковых ответов получает таблицу целиком в сообщении
+            Response shown = responses.get(3 * pair + 2);
+            assertTrue(shown.isSuccess());
+            assertNull(shown.getData());
+            assertTrue(shown.getMessage(), shown.getMessage().matches("(?s)id +\\| name .*"));
+            // Каждый remove_lower видит ровно элемент, добавленный предыдущей парой
+            Response removed = responses.get(3 * pair + 3);
+            assertTrue(removed.getMessage(), removed.getMessage().startsWith("Удалено " + (pair == 0 ? 0 : 1) + " "));
+        }
+        assertEquals(1, collectionManager.collectionSize());
+        assertEquals(PAIRS, collectionManager.getMin().getNumberOfRooms());
+    }
+
+    public void testDispatchStopsAtInFlightCap() throws Exception {
+        TestCollectionManager collectionManager = new TestCollectionManager();
+        CommandManager commandManager = new CommandManager(collectionManager);
+        CountDownLatch release = new CountDownLatch(1);
+        commandManager.register("block", new Command("block", "ждать разрешения теста") {
+            @Override
+            public Response execute(Request request) {
+                try {
+                    assertTrue(release.await(30, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new Response(true, "готово");
+            }
+        });
+        Handler.setCommandManager(commandManager);
+
+        RecordingConnection connection = new RecordingConnection(new WorkerPool(4, 1024));
+        int requests = 3 * MAX_IN_FLIGHT;
+        ByteArrayOutputStream pipeline = new ByteArrayOutputStream();
+        for (int requestId = 1; requestId <= requests; requestId++) {
+            pipeline.write(frame(requestId, new Request("block", null)));
+        }
+        connection.getFrameDecoder().append(ByteBuffer.wrap(pipeline.toByteArray()));
+        connection.dispatchBuffered();
+
+        // Все кадры пришли за одно чтение, но в обработку передано не больше предела, остальные ждут в буфере
+        assertEquals(MAX_IN_FLIGHT, connection.getInFlight().get());
+        assertTrue(connection.getFrameDecoder().buffered() > 0);
+
+        release.countDown();
+        assertEquals(requests, connection.awaitResponses(requests, 30_000).size());
+        assertEquals(0, connection.getFrameDecoder().buffered());
+    }
+
+    public void testStalledStreamsDoNotHoldWorkers() throws Exception {
+        TestCollectionManager collectionManager = new TestCollectionManager();
+        CommandManager commandManager = new CommandManager(collectionManager);
+        commandManager.register("show", new Show<>(collectionManager));
+        Handler.setCommandManager(commandManager);
+        // Таблица заметно больше одной части потокового ответа
+        for (int rooms = 1; rooms <= 2_000; rooms++) collectionManager.addToCollection(flat(rooms));
+
+        WorkerPool workerPool = new WorkerPool(1, 64);
+        RecordingConnection stalled = new RecordingConnection(workerPool);
+        stalled.setFeatures(Handshake.STREAMING);
+        stalled.setOutboundBytes(Connection.STREAM_HIGH_WATER + 1);
+        int streams = 4;
+        ByteArrayOutputStream pipeline = new ByteArrayOutputStream();
+        for (int requestId = 1; requestId <= streams; requestId++) {
+            pipeline.write(frame(requestId, new Request("show", null)));
+        }
+        stalled.getFrameDecoder().append(ByteBuffer.wrap(pipeline.toByteArray()));
+        stalled.dispatchBuffered();
+
+        // Единственный поток пула свободен для другого клиента, хотя потоки первого клиента не дописаны
+        RecordingConnection other = new RecordingConnection(workerPool);
+        other.getFrameDecoder().append(ByteBuffer.wrap(frame(1, new Request("show", null))));
+        other.dispatchBuffered();
+        assertEquals(1, other.awaitResponses(1, 30_000).size());
+        assertEquals(streams, stalled.getInFlight().get());
+
+        // Клиент снова принимает данные: отложенные потоки дописываются до конца
+        stalled.setOutboundBytes(0);
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (stalled.getInFlight().get() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(0, stalled.getInFlight().get());
+        assertEquals(streams, stalled.awaitResponses(streams, 1_000).size());
+    }
+}